@@ -1,5 +1,6 @@
 package com.m2a.db;
 
+import com.m2a.db.mapper.MappingPlan;
 import com.m2a.db.query.Sort;
 import com.m2a.enums.Operator;
 import com.m2a.reflections.Property;
@@ -10,8 +11,6 @@ import com.m2a.util.DateUtil;
 import com.m2a.util.StringUtil;
 import com.m2a.web.ParameterItem;
 import com.m2a.web.QParam;
-import jakarta.persistence.AttributeOverride;
-import jakarta.persistence.AttributeOverrides;
 import jakarta.persistence.Column;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.criteria.CriteriaBuilder;
@@ -31,84 +30,39 @@ import java.util.function.Predicate;
 public class QueryMapper {
 
     public static <E> E toObject(List<Map<String, Object>> queryResult, Class<E> clz) {
-        List<E> list = toList(queryResult, clz);
+        if (CollectionUtil.isEmpty(queryResult))
+            return null;
+        List<E> list = toList(queryResult.subList(0, 1), clz);
         if (CollectionUtil.isNotEmpty(list))
             return list.getFirst();
         return null;
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    /**
+     * maps the rows with the {@link MappingPlan} of the class and their columns, values are
+     * converted by {@link com.m2a.db.mapper.BeanProperty#convert}
+     */
     public static <E> List<E> toList(List<Map<String, Object>> queryResult, Class<E> clz) {
         List<E> instanceList = new ArrayList<E>();
         try {
             if (queryResult != null) {
-                List<Property> properties = getProperties(clz);
-                Map<String, String> maps = new HashMap<String, String>();
-                if (clz.isAnnotationPresent(AttributeOverrides.class))
-                    findRealColumnWithAttributeOverrides(clz, maps);
-                if (clz.isAnnotationPresent(AttributeOverride.class)) {
-                    AttributeOverride annotation = clz.getAnnotation(AttributeOverride.class);
-                    findRealColumnWithAttributeOverride(annotation, maps);
-                }
+                MappingPlan<E> plan = MappingPlan.of(clz);
                 for (Map<String, Object> dbRecord : queryResult) {
-
-                    E instance = clz.getDeclaredConstructor().newInstance();
-                    for (Property prop : properties) {
-                        String columnName = prop.getColumnName();
-                        if (!maps.isEmpty()) {
-                            // do we need to check for every iteration ?
-                            columnName = maps.get(columnName) == null ? columnName : maps.get(columnName);
-                        }
-                        Object recordValue = dbRecord.get(columnName);
-                        Field field = ReflectionUtil.getField(clz, prop.getFieldName());
-                        if (field != null && recordValue != null) {
-                            field.setAccessible(true);
-                            if (ReflectionUtil.isPrimitive(field.getType()) || ReflectionUtil.isWrapper(field.getType())) {
-                                Object val = ReflectionUtil.toObject(field.getType(), recordValue);
-                                ReflectionUtil.set(field, instance, val);
-                            } else if (field.getType().isEnum()) {
-                                Enum<?> enVal = Enum.valueOf((Class<Enum>) field.getType(), String.valueOf(recordValue));
-                                ReflectionUtil.set(field, instance, enVal);
-                            } else {
-                                Object entityInstance = field.getType().getDeclaredConstructor().newInstance();
-                                if (entityInstance instanceof EntityModel<?> po) {
-                                    Method[] m = po.getClass().getMethods();
-                                    for (Method method : m) {
-                                        if (method.getName().equals("setId")) {
-                                            Class<?> c = method.getParameterTypes()[0];
-                                            method.invoke(po, ReflectionUtil.toObject(c, recordValue));
-                                        }
-                                    }
-                                    ReflectionUtil.set(field, instance, entityInstance);
-                                }
-                            }
-                        }
-                    }
-                    instanceList.add(instance);
+                    plan = plan.forRow(dbRecord);
+                    instanceList.add(plan.map(dbRecord));
                 }
                 return instanceList;
             }
         } catch (Exception e) {
             e.fillInStackTrace();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("could not map " + clz.getName(), e);
         }
         return instanceList;
     }
 
-    private static void findRealColumnWithAttributeOverride(AttributeOverride attributeOverride, Map<String, String> maps) {
-        String attributeName = attributeOverride.name();
-        Column column = attributeOverride.column();
-        maps.put(attributeName, column.name());
-    }
-
-    private static void findRealColumnWithAttributeOverrides(Class<?> clz, Map<String, String> maps) {
-        if (clz.isAnnotationPresent(AttributeOverrides.class)) {
-            AttributeOverrides annotation = clz.getAnnotation(AttributeOverrides.class);
-            AttributeOverride[] value = annotation.value();
-            for (AttributeOverride attributeOverride : value)
-                findRealColumnWithAttributeOverride(attributeOverride, maps);
-        }
-    }
-
     public static List<Property> getProperties(Class<?> clz) {
         List<Property> props = new ArrayList<>();
         PropertyDescriptor[] descriptors = PropertyUtils.getPropertyDescriptors(clz);
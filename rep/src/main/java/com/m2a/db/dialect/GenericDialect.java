@@ -0,0 +1,42 @@
+package com.m2a.db.dialect;
+
+import java.util.List;
+
+/**
+ * databases that are not recognized, pages with {@code LIMIT ? OFFSET ?} as the query
+ * controller always did. in lists are bound as placeholders and keyset conditions are
+ * written without row values
+ */
+public final class GenericDialect implements SqlDialect {
+
+    public static final GenericDialect INSTANCE = new GenericDialect();
+
+    private GenericDialect() {
+    }
+
+    @Override
+    public String getName() {
+        return "Generic";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, boolean limited, boolean offset) {
+        if (limited)
+            sb.append(" LIMIT ?");
+        if (offset)
+            sb.append(" OFFSET ?");
+    }
+
+    @Override
+    public void bindPaging(List<Object> values, Integer limit, Integer offset) {
+        if (limit != null)
+            values.add(limit);
+        if (offset != null)
+            values.add(offset);
+    }
+
+    @Override
+    public boolean supportsRowValueComparison() {
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.m2a.db.dialect;
+
+import java.util.List;
+
+/**
+ * h2 2.x
+ */
+public final class H2Dialect implements SqlDialect {
+
+    public static final H2Dialect INSTANCE = new H2Dialect();
+
+    private H2Dialect() {
+    }
+
+    @Override
+    public String getName() {
+        return "H2";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, boolean limited, boolean offset) {
+        if (limited)
+            sb.append(" LIMIT ?");
+        if (offset)
+            sb.append(" OFFSET ?");
+    }
+
+    @Override
+    public void bindPaging(List<Object> values, Integer limit, Integer offset) {
+        if (limit != null)
+            values.add(limit);
+        if (offset != null)
+            values.add(offset);
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return true;
+    }
+}
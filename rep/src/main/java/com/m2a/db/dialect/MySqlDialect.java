@@ -0,0 +1,101 @@
+package com.m2a.db.dialect;
+
+import com.m2a.db.worker.DBUtil;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * mysql and mariadb
+ */
+public final class MySqlDialect implements SqlDialect {
+
+    public static final MySqlDialect INSTANCE = new MySqlDialect();
+
+    /**
+     * mysql has no offset without limit, the documented way is the largest limit
+     */
+    private static final String NO_LIMIT = "18446744073709551615";
+
+    private static final String IN_LIST_DDL = "CREATE TEMPORARY TABLE IF NOT EXISTS qc_in_list"
+            + " (list_id INT NOT NULL, n BIGINT, s VARCHAR(255), INDEX (list_id, n), INDEX (list_id, s))";
+
+    private MySqlDialect() {
+    }
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, boolean limited, boolean offset) {
+        if (limited)
+            sb.append(" LIMIT ?");
+        else if (offset)
+            sb.append(" LIMIT ").append(NO_LIMIT);
+        if (offset)
+            sb.append(" OFFSET ?");
+    }
+
+    @Override
+    public void bindPaging(List<Object> values, Integer limit, Integer offset) {
+        if (limit != null)
+            values.add(limit);
+        if (offset != null)
+            values.add(offset);
+    }
+
+    @Override
+    public String quoteIdentifier(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    @Override
+    public String batchRewriteProperty() {
+        return "rewriteBatchedStatements";
+    }
+
+    @Override
+    public boolean supportsInListTable() {
+        return true;
+    }
+
+    /**
+     * a temporary table can not be opened twice in one query, "Can't reopen table"
+     */
+    @Override
+    public boolean supportsInListTableReuse() {
+        return false;
+    }
+
+    @Override
+    public String createInListTable() {
+        return IN_LIST_DDL;
+    }
+
+    @Override
+    public boolean supportsCountEstimate() {
+        return true;
+    }
+
+    /**
+     * rows of the tables joined by the outer select multiplied by their filtered ratio
+     */
+    @Override
+    public Long estimateCount(DBUtil dbUtil, String sql, Object... params) {
+        List<Map<String, Object>> plan = dbUtil.executeQuery("EXPLAIN " + sql, params);
+        Double estimate = null;
+        for (Map<String, Object> row : plan) {
+            Object id = row.get("id");
+            if (id instanceof Number n && n.intValue() != 1)
+                continue;
+            if (!(row.get("rows") instanceof Number rows))
+                continue;
+            double filtered = row.get("filtered") instanceof Number f ? f.doubleValue() / 100 : 1;
+            double tableRows = rows.doubleValue() * filtered;
+            estimate = estimate == null ? tableRows : estimate * tableRows;
+        }
+        return estimate == null ? null : Math.round(estimate);
+    }
+}
@@ -0,0 +1,85 @@
+package com.m2a.db.dialect;
+
+import com.m2a.db.worker.DBUtil;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+
+import java.util.List;
+
+/**
+ * oracle 12c and later, pages with {@code OFFSET ... FETCH}
+ */
+public final class OracleDialect implements SqlDialect {
+
+    public static final OracleDialect INSTANCE = new OracleDialect();
+
+    private static final String STATEMENT_ID = "qc_estimate";
+
+    private OracleDialect() {
+    }
+
+    @Override
+    public String getName() {
+        return "Oracle";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, boolean limited, boolean offset) {
+        if (offset)
+            sb.append(" OFFSET ? ROWS");
+        if (limited)
+            sb.append(offset ? " FETCH NEXT ? ROWS ONLY" : " FETCH FIRST ? ROWS ONLY");
+    }
+
+    @Override
+    public void bindPaging(List<Object> values, Integer limit, Integer offset) {
+        if (offset != null)
+            values.add(offset);
+        if (limit != null)
+            values.add(limit);
+    }
+
+    /**
+     * oracle only compares row values for equality
+     */
+    @Override
+    public boolean supportsRowValueComparison() {
+        return false;
+    }
+
+    /**
+     * needs the global temporary table documented on
+     * {@link com.m2a.db.query.InListTable}
+     */
+    @Override
+    public boolean supportsInListTable() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsCountEstimate() {
+        return true;
+    }
+
+    /**
+     * explain, read and delete run on one primary connection, plan_table is a global
+     * temporary table whose rows only that session sees
+     */
+    @Override
+    public Long estimateCount(DBUtil dbUtil, String sql, Object... params) {
+        Long[] estimate = new Long[1];
+        dbUtil.doWork(connection -> {
+            QueryRunner qr = new QueryRunner();
+            qr.update(connection, "EXPLAIN PLAN SET STATEMENT_ID = '" + STATEMENT_ID + "' FOR " + sql, params);
+            try {
+                Number cardinality = qr.query(connection,
+                        "SELECT cardinality FROM plan_table WHERE statement_id = ? AND id = 0",
+                        new ScalarHandler<Number>(), STATEMENT_ID);
+                estimate[0] = cardinality == null ? null : cardinality.longValue();
+            } finally {
+                qr.update(connection, "DELETE FROM plan_table WHERE statement_id = ?", STATEMENT_ID);
+            }
+        });
+        return estimate[0];
+    }
+}
@@ -0,0 +1,63 @@
+package com.m2a.db.dialect;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.m2a.db.worker.DBUtil;
+
+import java.util.List;
+import java.util.Map;
+
+public final class PostgreSqlDialect implements SqlDialect {
+
+    public static final PostgreSqlDialect INSTANCE = new PostgreSqlDialect();
+
+    private PostgreSqlDialect() {
+    }
+
+    @Override
+    public String getName() {
+        return "PostgreSQL";
+    }
+
+    @Override
+    public void appendPaging(StringBuilder sb, boolean limited, boolean offset) {
+        if (limited)
+            sb.append(" LIMIT ?");
+        if (offset)
+            sb.append(" OFFSET ?");
+    }
+
+    @Override
+    public void bindPaging(List<Object> values, Integer limit, Integer offset) {
+        if (limit != null)
+            values.add(limit);
+        if (offset != null)
+            values.add(offset);
+    }
+
+    @Override
+    public String batchRewriteProperty() {
+        return "reWriteBatchedInserts";
+    }
+
+    @Override
+    public boolean supportsArrayBinding() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsCountEstimate() {
+        return true;
+    }
+
+    @Override
+    public Long estimateCount(DBUtil dbUtil, String sql, Object... params) {
+        List<Map<String, Object>> plan = dbUtil.executeQuery("EXPLAIN (FORMAT JSON) " + sql, params);
+        if (plan.isEmpty())
+            return null;
+        Object json = plan.getFirst().values().iterator().next();
+        JsonElement root = JsonParser.parseString(String.valueOf(json));
+        return root.getAsJsonArray().get(0).getAsJsonObject()
+                .getAsJsonObject("Plan").get("Plan Rows").getAsLong();
+    }
+}
@@ -0,0 +1,86 @@
+package com.m2a.db.dialect;
+
+import com.m2a.db.worker.DBUtil;
+
+import java.util.List;
+
+/**
+ * database specific sql used by the query layer, resolved once per session factory
+ * by {@link SqlDialects}. implementations are stateless singletons
+ */
+public interface SqlDialect {
+
+    String getName();
+
+    /**
+     * appends the paging clause to an ordered select, limit and offset placeholders
+     * are bound by {@link #bindPaging} in the order they are rendered here
+     */
+    void appendPaging(StringBuilder sb, boolean limited, boolean offset);
+
+    /**
+     * @param limit  rows to read, null when not limited
+     * @param offset zero based index of the first row, null when there is no offset
+     */
+    void bindPaging(List<Object> values, Integer limit, Integer offset);
+
+    default String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * whether a java array can be bound as one parameter and compared with {@code = ANY(?)}
+     */
+    default boolean supportsArrayBinding() {
+        return false;
+    }
+
+    /**
+     * whether {@code (a, b) > (?, ?)} compares row values in order
+     */
+    default boolean supportsRowValueComparison() {
+        return true;
+    }
+
+    /**
+     * whether large in lists can be loaded into the in list temp table
+     */
+    default boolean supportsInListTable() {
+        return false;
+    }
+
+    /**
+     * whether one query can read the in list temp table for more than one in list
+     */
+    default boolean supportsInListTableReuse() {
+        return true;
+    }
+
+    /**
+     * statement creating the in list temp table on demand, null when it is created once by the dba
+     */
+    default String createInListTable() {
+        return null;
+    }
+
+    /**
+     * connection property making the driver send a batch as multi row statements, null
+     * when the driver has none. it is a url property, the batch api only detects it
+     */
+    default String batchRewriteProperty() {
+        return null;
+    }
+
+    default boolean supportsCountEstimate() {
+        return false;
+    }
+
+    /**
+     * planner row estimate of the query
+     *
+     * @return estimate or null when the plan has none
+     */
+    default Long estimateCount(DBUtil dbUtil, String sql, Object... params) {
+        throw new UnsupportedOperationException(getName() + " can not estimate row count");
+    }
+}
@@ -0,0 +1,74 @@
+package com.m2a.db.dialect;
+
+import org.hibernate.JDBCException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * resolves the {@link SqlDialect} of a database from its jdbc product name, once per
+ * session factory or data source
+ */
+public final class SqlDialects {
+
+    private static final Map<Object, SqlDialect> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SqlDialects() {
+    }
+
+    public static SqlDialect resolve(Session session) {
+        SessionFactory sessionFactory = session.getSessionFactory();
+        if (sessionFactory == null)
+            return fromProductName(productName(session));
+        SqlDialect dialect = CACHE.get(sessionFactory);
+        if (dialect == null) {
+            dialect = fromProductName(productName(session));
+            CACHE.put(sessionFactory, dialect);
+        }
+        return dialect;
+    }
+
+    /**
+     * hibernate free mode, cached per data source
+     */
+    public static SqlDialect resolve(DataSource dataSource) {
+        SqlDialect dialect = CACHE.get(dataSource);
+        if (dialect == null) {
+            try (Connection connection = dataSource.getConnection()) {
+                dialect = fromProductName(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                throw new JDBCException("could not read database metadata", e);
+            }
+            CACHE.put(dataSource, dialect);
+        }
+        return dialect;
+    }
+
+    private static String productName(Session session) {
+        return session.doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+    }
+
+    /**
+     * @param productName {@link java.sql.DatabaseMetaData#getDatabaseProductName()}
+     */
+    public static SqlDialect fromProductName(String productName) {
+        if (productName == null)
+            return GenericDialect.INSTANCE;
+        String name = productName.toLowerCase();
+        if (name.contains("oracle"))
+            return OracleDialect.INSTANCE;
+        if (name.contains("mysql") || name.contains("mariadb"))
+            return MySqlDialect.INSTANCE;
+        if (name.contains("postgres"))
+            return PostgreSqlDialect.INSTANCE;
+        if (name.equals("h2"))
+            return H2Dialect.INSTANCE;
+        return GenericDialect.INSTANCE;
+    }
+}
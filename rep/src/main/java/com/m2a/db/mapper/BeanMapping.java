@@ -0,0 +1,161 @@
+package com.m2a.db.mapper;
+
+import com.m2a.db.QueryMapper;
+import com.m2a.reflections.ClassMetadata;
+import com.m2a.reflections.Property;
+import jakarta.persistence.AttributeOverride;
+import jakarta.persistence.AttributeOverrides;
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * columns of a class resolved once per class: the {@code @Column} and {@code @JoinColumn}
+ * properties of {@link QueryMapper#getProperties} with the class {@code @AttributeOverride(s)}
+ * applied, then the writable bean properties by name as the dbutils bean processor maps them
+ */
+public final class BeanMapping<T> {
+
+    private static final ClassValue<BeanMapping<?>> MAPPINGS = new ClassValue<>() {
+        @Override
+        protected BeanMapping<?> computeValue(Class<?> type) {
+            return new BeanMapping<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    /**
+     * annotated properties in {@link QueryMapper#getProperties} order
+     */
+    private final List<BeanProperty> properties;
+    /**
+     * lower case column to property, annotated columns before property names
+     */
+    private final Map<String, BeanProperty> columns;
+
+    private BeanMapping(Class<T> type) {
+        this.type = type;
+        try {
+            this.constructor = constructor(type);
+            Map<String, String> overrides = overrides(type);
+            List<BeanProperty> annotated = new ArrayList<>();
+            Map<String, BeanProperty> byColumn = new HashMap<>();
+            for (Property prop : QueryMapper.getProperties(type)) {
+                String column = overrides.getOrDefault(prop.getColumnName(), prop.getColumnName());
+                BeanProperty property = property(type, prop.getFieldName(), column);
+                if (property == null)
+                    continue;
+                annotated.add(property);
+                byColumn.putIfAbsent(key(column), property);
+            }
+            for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+                if (descriptor.getWriteMethod() == null || byColumn.containsKey(key(descriptor.getName())))
+                    continue;
+                Method setter = descriptor.getWriteMethod();
+                byColumn.put(key(descriptor.getName()), new BeanProperty(descriptor.getName(), descriptor.getName(),
+                        setter.getParameterTypes()[0], lookup(setter.getDeclaringClass()).unreflect(setter)));
+            }
+            this.properties = List.copyOf(annotated);
+            this.columns = Map.copyOf(byColumn);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("can not map " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> BeanMapping<T> of(Class<T> type) {
+        return (BeanMapping<T>) MAPPINGS.get(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public List<BeanProperty> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return property of the column, case insensitive, null when the class has none
+     */
+    public BeanProperty property(String column) {
+        return columns.get(key(column));
+    }
+
+    @SuppressWarnings("unchecked")
+    public T newInstance() throws Throwable {
+        if (constructor == null)
+            throw new IllegalStateException(type.getName() + " has no no-arg constructor");
+        return (T) constructor.invokeExact();
+    }
+
+    private static String key(String column) {
+        return column.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * attribute name to column of the class overrides, looked up by column name as
+     * {@link QueryMapper#toList} does
+     */
+    private static Map<String, String> overrides(Class<?> type) {
+        Map<String, String> overrides = new HashMap<>();
+        AttributeOverrides all = type.getAnnotation(AttributeOverrides.class);
+        if (all != null)
+            for (AttributeOverride override : all.value())
+                overrides.put(override.name(), override.column().name());
+        AttributeOverride one = type.getAnnotation(AttributeOverride.class);
+        if (one != null)
+            overrides.put(one.name(), one.column().name());
+        return overrides;
+    }
+
+    /**
+     * the field of the name in the class or a super class, else the setter of the property
+     */
+    private static BeanProperty property(Class<?> type, String name, String column) throws ReflectiveOperationException {
+        Field field = ClassMetadata.of(type).getField(name);
+        if (field != null) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+                return null;
+            return new BeanProperty(name, column, field.getType(),
+                    lookup(field.getDeclaringClass()).unreflectSetter(field));
+        }
+        for (PropertyDescriptor descriptor : PropertyUtils.getPropertyDescriptors(type)) {
+            Method setter = descriptor.getWriteMethod();
+            if (descriptor.getName().equals(name) && setter != null)
+                return new BeanProperty(name, column, setter.getParameterTypes()[0],
+                        lookup(setter.getDeclaringClass()).unreflect(setter));
+        }
+        return null;
+    }
+
+    static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    /**
+     * no-arg constructor as {@code ()Object}, null when there is none
+     */
+    static MethodHandle constructor(Class<?> type) throws IllegalAccessException {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+            return null;
+        try {
+            return lookup(type).findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
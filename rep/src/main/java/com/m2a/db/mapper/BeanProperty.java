@@ -0,0 +1,156 @@
+package com.m2a.db.mapper;
+
+import com.m2a.db.EntityModel;
+import com.m2a.reflections.Converters;
+import com.m2a.reflections.ReflectionUtil;
+import com.m2a.util.StringUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * a column of an entity and the method handle writing it, the field when the class has
+ * one (as {@link com.m2a.db.QueryMapper} always did) otherwise the setter
+ */
+public final class BeanProperty {
+
+    private final String name;
+    private final String column;
+    private final Class<?> type;
+    /**
+     * writer with its declared types, {@code (bean, type)void}
+     */
+    private final MethodHandle writer;
+    /**
+     * {@code (Object, Object)void}
+     */
+    private final MethodHandle genericWriter;
+    /**
+     * builds the referenced entity of a join column, null for other types
+     */
+    private final MethodHandle entityConstructor;
+    private final MethodHandle entityIdSetter;
+    private final Class<?> entityIdType;
+    private final Conversion conversion;
+    private Resolved resolved;
+
+    BeanProperty(String name, String column, Class<?> type, MethodHandle writer) throws ReflectiveOperationException {
+        this.name = name;
+        this.column = column;
+        this.type = type;
+        this.writer = writer;
+        this.genericWriter = writer.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        if (EntityModel.class.isAssignableFrom(type) && !type.isInterface()
+                && !java.lang.reflect.Modifier.isAbstract(type.getModifiers())) {
+            Method setId = setId(type);
+            this.entityConstructor = BeanMapping.constructor(type);
+            this.entityIdSetter = setId == null ? null : BeanMapping.lookup(type).unreflect(setId)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            this.entityIdType = setId == null ? null : setId.getParameterTypes()[0];
+        } else {
+            this.entityConstructor = null;
+            this.entityIdSetter = null;
+            this.entityIdType = null;
+        }
+        this.conversion = conversion();
+    }
+
+    /**
+     * converts a non null column value to the property type
+     */
+    @FunctionalInterface
+    private interface Conversion {
+        Object apply(Object value) throws Throwable;
+    }
+
+    private Conversion conversion() {
+        if (ReflectionUtil.isPrimitive(type) || ReflectionUtil.isWrapper(type))
+            return value -> value instanceof String s && StringUtil.isEmpty(s) ? null : converter(type, value).convert(value);
+        if (type.isEnum())
+            return value -> converter(type, value).convert(value);
+        if (entityConstructor != null)
+            return value -> {
+                Object entity = entityConstructor.invokeExact();
+                if (entityIdSetter != null)
+                    entityIdSetter.invokeExact(entity, value instanceof String s && StringUtil.isEmpty(s) ? null
+                            : converter(entityIdType, value).convert(value));
+                return entity;
+            };
+        return value -> {
+            if (type.isInstance(value))
+                return value;
+            Object converted;
+            try {
+                converted = converter(type, value).convert(value);
+            } catch (IllegalArgumentException e) {
+                // other number types, as BigInteger, are left unset when they can not be converted
+                return null;
+            }
+            return type.isInstance(converted) ? converted : null;
+        };
+    }
+
+    /**
+     * converter of the value's class to the target, resolved again only when the class
+     * changes, as the values of a column share theirs
+     */
+    private Converters.Converter converter(Class<?> target, Object value) {
+        Resolved last = resolved;
+        if (last == null || last.source() != value.getClass()) {
+            last = new Resolved(value.getClass(), Converters.of(value.getClass(), target));
+            resolved = last;
+        }
+        return last.converter();
+    }
+
+    private record Resolved(Class<?> source, Converters.Converter converter) {
+    }
+
+    private static Method setId(Class<?> type) {
+        Method found = null;
+        for (Method method : type.getMethods())
+            if (method.getName().equals("setId") && method.getParameterCount() == 1
+                    && (found == null || found.isBridge()))
+                found = method;
+        return found;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * writer typed for a primitive value, {@code (Object, primitive)void}
+     */
+    MethodHandle writer(Class<?> primitive) {
+        return writer.asType(MethodType.methodType(void.class, Object.class, primitive));
+    }
+
+    /**
+     * writes a converted value, see {@link #convert}
+     */
+    public void set(Object bean, Object value) throws Throwable {
+        genericWriter.invokeExact(bean, value);
+    }
+
+    /**
+     * converts a column value to the property type the way {@link com.m2a.db.QueryMapper}
+     * does: primitives, wrappers and other simple types as {@link ReflectionUtil#toObject}
+     * does, enums by name and entities by id, with the {@link Converters} converter of the
+     * column's value class
+     *
+     * @return the value or null when it can not be converted
+     */
+    public Object convert(Object value) throws Throwable {
+        return value == null ? null : conversion.apply(value);
+    }
+}
@@ -0,0 +1,38 @@
+package com.m2a.db.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * mapper of an entity written at compile time by {@link RowMapperProcessor}, in the package
+ * of the entity and named after it with the {@link RowMapperProcessor#SUFFIX} suffix.
+ * {@link RowMappers} and {@link MappingPlan} use it when it exists and map by reflection
+ * otherwise, both bind the same columns
+ */
+public interface GeneratedRowMapper<T> {
+
+    Class<T> type();
+
+    /**
+     * the {@code @Column} and {@code @JoinColumn} columns, overrides applied
+     */
+    List<String> columns();
+
+    /**
+     * names of the other writable properties, matched by name after the columns
+     */
+    List<String> properties();
+
+    /**
+     * @param indexes one based result index of each of the columns then of the properties,
+     *                0 when the result has none
+     */
+    T map(ResultSet rs, int[] indexes) throws SQLException;
+
+    /**
+     * @param values value of each of the columns, converted as {@link com.m2a.db.QueryMapper}
+     *               converts them
+     */
+    T map(Object[] values);
+}
@@ -0,0 +1,164 @@
+package com.m2a.db.mapper;
+
+import com.m2a.db.worker.Row;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the annotated properties of a class bound to the columns of a row map, built once per
+ * class and column set. rows of a {@link com.m2a.db.worker.RowSet} are read by index,
+ * other maps by the column names of the properties. the {@link GeneratedRowMapper} of the
+ * class writes the values when there is one
+ */
+public final class MappingPlan<T> {
+
+    /**
+     * column sets kept per class, more are built again on every use
+     */
+    private static final int MAX_LAYOUTS = 64;
+
+    private static final ClassValue<Plans> PLANS = new ClassValue<>() {
+        @Override
+        protected Plans computeValue(Class<?> type) {
+            return new Plans(BeanMapping.of(type));
+        }
+    };
+
+    private final BeanMapping<T> mapping;
+    private final List<String> columns;
+    private final BeanProperty[] properties;
+    /**
+     * index of each property in the columns, unused without columns
+     */
+    private final int[] indexes;
+    private final GeneratedRowMapper<T> generated;
+    /**
+     * column names of the generated mapper and their index in the columns, -1 when absent
+     */
+    private final String[] generatedColumns;
+    private final int[] generatedIndexes;
+
+    private MappingPlan(BeanMapping<T> mapping, List<String> columns) {
+        this.mapping = mapping;
+        this.columns = columns;
+        this.generated = RowMappers.generated(mapping.getType());
+        this.generatedColumns = generated == null ? null : generated.columns().toArray(new String[0]);
+        this.generatedIndexes = generated == null || columns == null ? null
+                : generated.columns().stream().mapToInt(column -> indexOf(columns, column)).toArray();
+        List<BeanProperty> bound = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (BeanProperty property : mapping.getProperties()) {
+            if (columns == null) {
+                bound.add(property);
+                continue;
+            }
+            int index = indexOf(columns, property.getColumn());
+            if (index != -1) {
+                bound.add(property);
+                positions.add(index);
+            }
+        }
+        this.properties = bound.toArray(new BeanProperty[0]);
+        this.indexes = positions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * the plan for an equal column list of another result, identity of the list is what
+     * {@link #forRow} checks
+     */
+    private MappingPlan(MappingPlan<T> plan, List<String> columns) {
+        this.mapping = plan.mapping;
+        this.columns = columns;
+        this.properties = plan.properties;
+        this.indexes = plan.indexes;
+        this.generated = plan.generated;
+        this.generatedColumns = plan.generatedColumns;
+        this.generatedIndexes = plan.generatedIndexes;
+    }
+
+    /**
+     * plan reading every annotated property by its column name
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MappingPlan<T> of(Class<T> type) {
+        return (MappingPlan<T>) PLANS.get(type).byName;
+    }
+
+    /**
+     * plan reading the annotated properties present in the columns by index
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MappingPlan<T> of(Class<T> type, List<String> columns) {
+        Plans plans = PLANS.get(type);
+        MappingPlan<?> plan = plans.byColumns.get(columns);
+        if (plan == null) {
+            plan = new MappingPlan<>(plans.mapping, columns);
+            if (plans.byColumns.size() < MAX_LAYOUTS)
+                plans.byColumns.putIfAbsent(columns, plan);
+        }
+        return (MappingPlan<T>) (plan.columns == columns ? plan : new MappingPlan<>(plan, columns));
+    }
+
+    /**
+     * the plan of the row's columns, this plan when they are the same
+     */
+    public MappingPlan<T> forRow(Map<String, Object> row) {
+        if (!(row instanceof Row r))
+            return columns == null ? this : of(mapping.getType());
+        return r.getColumns() == columns ? this : of(mapping.getType(), r.getColumns());
+    }
+
+    /**
+     * new instance with the non null values of the row, the row must fit the plan, see
+     * {@link #forRow}
+     */
+    public T map(Map<String, Object> row) throws Throwable {
+        if (generated != null)
+            return mapGenerated(row);
+        T bean = mapping.newInstance();
+        boolean indexed = columns != null;
+        for (int i = 0; i < properties.length; i++) {
+            BeanProperty property = properties[i];
+            Object value = indexed ? ((Row) row).get(indexes[i]) : row.get(property.getColumn());
+            if (value == null)
+                continue;
+            value = property.convert(value);
+            if (value != null)
+                property.set(bean, value);
+        }
+        return bean;
+    }
+
+    private T mapGenerated(Map<String, Object> row) {
+        Object[] values = new Object[generatedColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            if (generatedIndexes == null)
+                values[i] = row.get(generatedColumns[i]);
+            else if (generatedIndexes[i] != -1)
+                values[i] = ((Row) row).get(generatedIndexes[i]);
+        }
+        return generated.map(values);
+    }
+
+    private static int indexOf(List<String> columns, String column) {
+        for (int i = 0; i < columns.size(); i++)
+            if (columns.get(i).equalsIgnoreCase(column))
+                return i;
+        return -1;
+    }
+
+    private static final class Plans {
+        private final BeanMapping<?> mapping;
+        private final MappingPlan<?> byName;
+        private final Map<List<String>, MappingPlan<?>> byColumns = new ConcurrentHashMap<>();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Plans(BeanMapping<?> mapping) {
+            this.mapping = mapping;
+            this.byName = new MappingPlan(mapping, null);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.m2a.db.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * maps the current row of a result set to an object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+}
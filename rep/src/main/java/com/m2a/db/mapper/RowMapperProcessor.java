@@ -0,0 +1,639 @@
+package com.m2a.db.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * writes a {@link GeneratedRowMapper} for every concrete class with {@code @Column} or
+ * {@code @JoinColumn} properties, own or inherited as for {@code PO} subclasses. columns
+ * are resolved like {@link com.m2a.db.QueryMapper#getProperties}: annotated getters, the
+ * annotated fields when there are none, with the class {@code @AttributeOverride(s)}.
+ * <p>
+ * properties are written with their setter, the lombok setter or the field. a class having
+ * a property none of them can write gets no mapper and is mapped by reflection.
+ * <p>
+ * not registered in the jar, builds wanting the mappers add the {@code processor} classifier
+ * jar of this artifact to their processor path, the {@code annotationProcessorPaths} of the
+ * compiler plugin. it runs in the rounds having {@code @Column} or {@code @JoinColumn}
+ * elements, a subclass compiled without any maps by reflection
+ */
+@SupportedAnnotationTypes({"jakarta.persistence.Column", "jakarta.persistence.JoinColumn"})
+public class RowMapperProcessor extends AbstractProcessor {
+
+    public static final String SUFFIX = "_RowMapper";
+
+    private static final String COLUMN = "jakarta.persistence.Column";
+    private static final String JOIN_COLUMN = "jakarta.persistence.JoinColumn";
+    private static final String ATTRIBUTE_OVERRIDE = "jakarta.persistence.AttributeOverride";
+    private static final String ATTRIBUTE_OVERRIDES = "jakarta.persistence.AttributeOverrides";
+    private static final String TRANSIENT = "java.beans.Transient";
+    private static final String LOMBOK_SETTER = "lombok.Setter";
+    private static final String LOMBOK_DATA = "lombok.Data";
+    private static final String ENTITY_MODEL = "com.m2a.db.EntityModel";
+    private static final String REFLECTION_UTIL = "com.m2a.reflections.ReflectionUtil";
+    private static final String CONVERTERS = "com.m2a.reflections.Converters";
+
+    /**
+     * types {@link com.m2a.reflections.ReflectionUtil#isPrimitive} accepts, their values are
+     * converted with {@link com.m2a.reflections.ReflectionUtil#toObject}
+     */
+    private static final Set<String> CONVERTED = Set.of("java.lang.Boolean", "java.lang.Byte",
+            "java.lang.Character", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float",
+            "java.lang.Double", "java.lang.String", "java.math.BigDecimal", "java.util.Date", "java.sql.Date");
+
+    private static final Map<String, String> GETTERS = Map.ofEntries(
+            Map.entry("long", "getLong"), Map.entry("java.lang.Long", "getLong"),
+            Map.entry("int", "getInt"), Map.entry("java.lang.Integer", "getInt"),
+            Map.entry("double", "getDouble"), Map.entry("java.lang.Double", "getDouble"),
+            Map.entry("boolean", "getBoolean"), Map.entry("java.lang.Boolean", "getBoolean"),
+            Map.entry("short", "getShort"), Map.entry("java.lang.Short", "getShort"),
+            Map.entry("float", "getFloat"), Map.entry("java.lang.Float", "getFloat"),
+            Map.entry("byte", "getByte"), Map.entry("java.lang.Byte", "getByte"));
+
+    private static final Map<String, String> NULLABLE_GETTERS = Map.of(
+            "java.lang.String", "getString",
+            "java.math.BigDecimal", "getBigDecimal",
+            "java.util.Date", "getTimestamp",
+            "java.sql.Timestamp", "getTimestamp",
+            "java.sql.Date", "getDate",
+            "java.sql.Time", "getTime");
+
+    private static final Set<String> JAVA_TIME = Set.of("java.time.LocalDate", "java.time.LocalDateTime",
+            "java.time.LocalTime", "java.time.OffsetDateTime");
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements()))
+            visit(type);
+        return false;
+    }
+
+    private void visit(TypeElement type) {
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements()))
+            if (nested.getModifiers().contains(Modifier.STATIC))
+                visit(nested);
+        if (!mappable(type))
+            return;
+        String name = mapperName(type);
+        if (!generated.add(name))
+            return;
+        try {
+            String source = new Source(type, name).source();
+            if (source == null)
+                return;
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(name, type);
+            try (java.io.Writer out = file.openWriter()) {
+                out.write(source);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "could not write row mapper : " + e.getMessage(), type);
+        }
+    }
+
+    /**
+     * qualified name of the mapper, nested class names joined by an underscore
+     */
+    private String mapperName(TypeElement type) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String binary = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simple = pkg.isUnnamed() ? binary : binary.substring(pkg.getQualifiedName().length() + 1);
+        String mapper = simple.replace('$', '_') + SUFFIX;
+        return pkg.isUnnamed() ? mapper : pkg.getQualifiedName() + "." + mapper;
+    }
+
+    private static boolean mappable(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)
+                || type.getModifiers().contains(Modifier.PRIVATE) || !type.getTypeParameters().isEmpty())
+            return false;
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+            return false;
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement t;
+             enclosing = t.getEnclosingElement())
+            if (t.getModifiers().contains(Modifier.PRIVATE))
+                return false;
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (ExecutableElement constructor : constructors)
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE))
+                return true;
+        return constructors.isEmpty();
+    }
+
+    /**
+     * a property bound to a column, or to its own name for the by name properties
+     */
+    private record Binding(String column, String name, TypeMirror type, String writer, boolean field) {
+    }
+
+    /**
+     * source of the mapper of one class
+     */
+    private final class Source {
+        private final TypeElement type;
+        private final String name;
+        private final String typeName;
+        private final String pkg;
+        private final List<VariableElement> fields = new ArrayList<>();
+        private final List<ExecutableElement> methods;
+
+        private Source(TypeElement type, String name) {
+            this.type = type;
+            this.name = name;
+            this.typeName = type.getQualifiedName().toString();
+            this.pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+            for (TypeElement c = type; c != null; c = superclass(c))
+                fields.addAll(ElementFilter.fieldsIn(c.getEnclosedElements()));
+            this.methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        }
+
+        /**
+         * @return the source or null when the class has no columns or one can not be written
+         */
+        String source() {
+            List<Binding> columns = columns();
+            if (columns == null || columns.isEmpty())
+                return null;
+            List<Binding> properties = properties(columns);
+            StringBuilder sb = new StringBuilder();
+            int dot = name.lastIndexOf('.');
+            String simpleName = name.substring(dot + 1);
+            if (dot > 0)
+                sb.append("package ").append(name, 0, dot).append(";\n\n");
+            sb.append("@javax.annotation.processing.Generated(\"").append(RowMapperProcessor.class.getName()).append("\")\n");
+            sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+            sb.append("public final class ").append(simpleName).append(" implements ")
+                    .append(GeneratedRowMapper.class.getName()).append("<").append(typeName).append("> {\n\n");
+            sb.append("    private static final java.util.List<String> COLUMNS = java.util.List.of(")
+                    .append(names(columns, true)).append(");\n");
+            sb.append("    private static final java.util.List<String> PROPERTIES = java.util.List.of(")
+                    .append(names(properties, false)).append(");\n\n");
+            sb.append("    @Override\n    public Class<").append(typeName).append("> type() {\n        return ")
+                    .append(typeName).append(".class;\n    }\n\n");
+            sb.append("    @Override\n    public java.util.List<String> columns() {\n        return COLUMNS;\n    }\n\n");
+            sb.append("    @Override\n    public java.util.List<String> properties() {\n        return PROPERTIES;\n    }\n\n");
+            sb.append("    @Override\n    public ").append(typeName)
+                    .append(" map(java.sql.ResultSet rs, int[] indexes) throws java.sql.SQLException {\n");
+            sb.append("        ").append(typeName).append(" bean = new ").append(typeName).append("();\n");
+            sb.append("        int i;\n");
+            List<Binding> all = new ArrayList<>(columns);
+            all.addAll(properties);
+            for (int n = 0; n < all.size(); n++) {
+                sb.append("        if ((i = indexes[").append(n).append("]) != 0) {\n");
+                read(sb, all.get(n));
+                sb.append("        }\n");
+            }
+            sb.append("        return bean;\n    }\n\n");
+            sb.append("    @Override\n    public ").append(typeName).append(" map(Object[] values) {\n");
+            sb.append("        ").append(typeName).append(" bean = new ").append(typeName).append("();\n");
+            sb.append("        Object v;\n");
+            for (int n = 0; n < columns.size(); n++) {
+                sb.append("        if ((v = values[").append(n).append("]) != null) {\n");
+                convert(sb, columns.get(n));
+                sb.append("        }\n");
+            }
+            sb.append("        return bean;\n    }\n}\n");
+            return sb.toString();
+        }
+
+        /**
+         * annotated getters, else annotated fields, as {@link com.m2a.db.QueryMapper#getProperties}
+         *
+         * @return the bindings or null when a property can not be written
+         */
+        private List<Binding> columns() {
+            Map<String, String> overrides = overrides();
+            List<Binding> bindings = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (ExecutableElement method : methods) {
+                String property = getterProperty(method);
+                if (property == null || annotation(method, TRANSIENT) != null)
+                    continue;
+                for (String annotation : List.of(COLUMN, JOIN_COLUMN)) {
+                    String column = columnName(annotation(method, annotation));
+                    if (column == null)
+                        continue;
+                    column = overrides.getOrDefault(column, column);
+                    if (!seen.add(key(column)))
+                        continue;
+                    Binding binding = binding(column, property, ((ExecutableType) memberType(method)).getReturnType());
+                    if (binding == null)
+                        return null;
+                    bindings.add(binding);
+                }
+            }
+            if (!bindings.isEmpty())
+                return bindings;
+            for (VariableElement field : fields) {
+                if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.FINAL))
+                    continue;
+                for (String annotation : List.of(COLUMN, JOIN_COLUMN)) {
+                    String column = columnName(annotation(field, annotation));
+                    if (column == null)
+                        continue;
+                    column = overrides.getOrDefault(column, column);
+                    if (!seen.add(key(column)))
+                        continue;
+                    Binding binding = binding(column, field.getSimpleName().toString(), memberType(field));
+                    if (binding == null)
+                        return null;
+                    bindings.add(binding);
+                }
+            }
+            return bindings;
+        }
+
+        /**
+         * the other setters, matched by name as the dbutils bean processor does
+         */
+        private List<Binding> properties(List<Binding> columns) {
+            Set<String> seen = new HashSet<>();
+            for (Binding column : columns)
+                seen.add(key(column.column()));
+            Map<String, Binding> bindings = new LinkedHashMap<>();
+            for (ExecutableElement method : methods) {
+                String setter = method.getSimpleName().toString();
+                if (!setter.startsWith("set") || setter.length() == 3 || method.getParameters().size() != 1
+                        || !method.getModifiers().contains(Modifier.PUBLIC)
+                        || method.getModifiers().contains(Modifier.STATIC))
+                    continue;
+                String property = decapitalize(setter.substring(3));
+                TypeMirror propertyType = parameterType(method);
+                if (!seen.contains(key(property)) && visible(propertyType))
+                    bindings.putIfAbsent(key(property), new Binding(property, property, propertyType, setter, false));
+            }
+            for (VariableElement field : fields) {
+                String setter = lombokSetter(field);
+                String property = setter == null ? null : decapitalize(setter.substring(3));
+                if (property != null && !seen.contains(key(property)) && visible(memberType(field)))
+                    bindings.putIfAbsent(key(property), new Binding(property, property, memberType(field), setter, false));
+            }
+            return new ArrayList<>(bindings.values());
+        }
+
+        /**
+         * writes the property with its setter, its lombok setter or its field
+         */
+        private Binding binding(String column, String property, TypeMirror propertyType) {
+            if (!visible(propertyType)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "no row mapper, the type of " + property + " is not visible", type);
+                return null;
+            }
+            String setter = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            for (ExecutableElement method : methods)
+                if (method.getSimpleName().contentEquals(setter) && method.getParameters().size() == 1
+                        && method.getModifiers().contains(Modifier.PUBLIC)
+                        && !method.getModifiers().contains(Modifier.STATIC)
+                        && sameErasure(parameterType(method), propertyType))
+                    return new Binding(column, property, propertyType, setter, false);
+            for (VariableElement field : fields) {
+                if (!field.getSimpleName().contentEquals(property))
+                    continue;
+                String lombok = lombokSetter(field);
+                if (lombok != null && sameErasure(memberType(field), propertyType))
+                    return new Binding(column, property, propertyType, lombok, false);
+                if (accessible(field) && sameErasure(memberType(field), propertyType))
+                    return new Binding(column, property, propertyType, property, true);
+                break;
+            }
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "no row mapper, " + property + " can not be written", type);
+            return null;
+        }
+
+        private boolean accessible(VariableElement field) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                    || modifiers.contains(Modifier.FINAL))
+                return false;
+            if (modifiers.contains(Modifier.PUBLIC))
+                return true;
+            return processingEnv.getElementUtils().getPackageOf(field).getQualifiedName().contentEquals(pkg);
+        }
+
+        /**
+         * name of the setter lombok writes for the field, null when it writes none
+         */
+        private String lombokSetter(VariableElement field) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL))
+                return null;
+            Element owner = field.getEnclosingElement();
+            if (annotation(field, LOMBOK_SETTER) == null && annotation(owner, LOMBOK_SETTER) == null
+                    && annotation(owner, LOMBOK_DATA) == null)
+                return null;
+            String property = field.getSimpleName().toString();
+            if (field.asType().getKind() == TypeKind.BOOLEAN && property.length() > 2 && property.startsWith("is")
+                    && Character.isUpperCase(property.charAt(2)))
+                property = property.substring(2);
+            return "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        }
+
+        /**
+         * reads the column {@code i} of the result set and writes it
+         */
+        private void read(StringBuilder sb, Binding binding) {
+            String type = erasure(binding.type());
+            String getter = GETTERS.get(type);
+            if (getter != null) {
+                String local = binding.type().getKind().isPrimitive() ? type : primitive(type);
+                sb.append("            ").append(local).append(" v = rs.").append(getter).append("(i);\n");
+                sb.append("            if (!rs.wasNull())\n");
+                sb.append("                ").append(write(binding, "v")).append("\n");
+                return;
+            }
+            getter = NULLABLE_GETTERS.get(type);
+            if (getter != null || JAVA_TIME.contains(type)) {
+                String value = getter != null ? "rs." + getter + "(i)" : "rs.getObject(i, " + type + ".class)";
+                String local = "java.util.Date".equals(type) ? "java.sql.Timestamp" : type;
+                sb.append("            ").append(local).append(" v = ").append(value).append(";\n");
+                sb.append("            if (v != null)\n");
+                sb.append("                ").append(write(binding, "v")).append("\n");
+                return;
+            }
+            if (isEnum(binding.type())) {
+                sb.append("            String v = rs.getString(i);\n");
+                sb.append("            if (v != null)\n");
+                sb.append("                ").append(write(binding, CONVERTERS + ".enumValue(" + type + ".class, v)"))
+                        .append("\n");
+                return;
+            }
+            sb.append("            Object v = rs.getObject(i);\n");
+            ExecutableElement setId = entitySetId(binding.type());
+            if (setId != null) {
+                sb.append("            if (v != null) {\n");
+                writeEntity(sb, binding, type, setId, "                ");
+                sb.append("            }\n");
+                return;
+            }
+            // converted like the reflective mapper converts, as for an instant read from a timestamp
+            sb.append("            if (").append(CONVERTERS).append(".convert(v, ").append(type)
+                    .append(".class) instanceof ").append(boxed(binding.type())).append(" t)\n");
+            sb.append("                ").append(write(binding, "t")).append("\n");
+        }
+
+        /**
+         * converts the map value {@code v} and writes it
+         */
+        private void convert(StringBuilder sb, Binding binding) {
+            String type = erasure(binding.type());
+            String boxed = boxed(binding.type());
+            if (CONVERTED.contains(boxed)) {
+                sb.append("            ").append(write(binding, "(" + boxed + ") " + REFLECTION_UTIL + ".toObject("
+                        + type + ".class, v)")).append("\n");
+                return;
+            }
+            if (isEnum(binding.type())) {
+                sb.append("            ").append(write(binding, CONVERTERS + ".enumValue(" + type
+                        + ".class, String.valueOf(v))")).append("\n");
+                return;
+            }
+            ExecutableElement setId = entitySetId(binding.type());
+            if (setId != null) {
+                writeEntity(sb, binding, type, setId, "            ");
+                return;
+            }
+            sb.append("            if (").append(CONVERTERS).append(".convert(v, ").append(type)
+                    .append(".class) instanceof ").append(boxed(binding.type())).append(" t)\n");
+            sb.append("                ").append(write(binding, "t")).append("\n");
+        }
+
+        /**
+         * writes a new entity with the id {@code v}
+         */
+        private void writeEntity(StringBuilder sb, Binding binding, String type, ExecutableElement setId, String indent) {
+            TypeMirror idType = ((ExecutableType) processingEnv.getTypeUtils()
+                    .asMemberOf((DeclaredType) binding.type(), setId)).getParameterTypes().getFirst();
+            sb.append(indent).append(type).append(" e = new ").append(type).append("();\n");
+            sb.append(indent).append("e.setId((").append(boxed(idType)).append(") ").append(REFLECTION_UTIL)
+                    .append(".toObject(").append(erasure(idType)).append(".class, v));\n");
+            sb.append(indent).append(write(binding, "e")).append("\n");
+        }
+
+        private String write(Binding binding, String value) {
+            return binding.field() ? "bean." + binding.writer() + " = " + value + ";"
+                    : "bean." + binding.writer() + "(" + value + ");";
+        }
+
+        /**
+         * setId of a concrete {@code EntityModel} type with an accessible no-arg constructor
+         */
+        private ExecutableElement entitySetId(TypeMirror propertyType) {
+            TypeElement entityModel = processingEnv.getElementUtils().getTypeElement(ENTITY_MODEL);
+            if (entityModel == null || !(propertyType instanceof DeclaredType declared)
+                    || !(declared.asElement() instanceof TypeElement element))
+                return null;
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)
+                    || !processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(propertyType),
+                    processingEnv.getTypeUtils().erasure(entityModel.asType())))
+                return null;
+            boolean constructor = false;
+            for (ExecutableElement c : ElementFilter.constructorsIn(element.getEnclosedElements()))
+                constructor |= c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC);
+            if (!constructor && !ElementFilter.constructorsIn(element.getEnclosedElements()).isEmpty())
+                return null;
+            for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(element)))
+                if (method.getSimpleName().contentEquals("setId") && method.getParameters().size() == 1
+                        && method.getModifiers().contains(Modifier.PUBLIC)) {
+                    TypeMirror idType = ((ExecutableType) processingEnv.getTypeUtils()
+                            .asMemberOf(declared, method)).getParameterTypes().getFirst();
+                    return idType.getKind() == TypeKind.TYPEVAR || !visible(idType) ? null : method;
+                }
+            return null;
+        }
+
+        private Map<String, String> overrides() {
+            Map<String, String> overrides = new HashMap<>();
+            AnnotationMirror all = annotation(type, ATTRIBUTE_OVERRIDES);
+            if (all != null && value(all, "value") instanceof List<?> list)
+                for (Object override : list)
+                    if (override instanceof AnnotationValue v && v.getValue() instanceof AnnotationMirror mirror)
+                        override(mirror, overrides);
+            AnnotationMirror one = annotation(type, ATTRIBUTE_OVERRIDE);
+            if (one != null)
+                override(one, overrides);
+            return overrides;
+        }
+
+        private void override(AnnotationMirror override, Map<String, String> overrides) {
+            Object name = value(override, "name");
+            String column = value(override, "column") instanceof AnnotationMirror c ? columnName(c) : null;
+            if (name instanceof String n)
+                overrides.put(n, column == null ? "" : column);
+        }
+
+        /**
+         * type of the field or method as a member of the class, type variables resolved
+         */
+        private TypeMirror memberType(Element member) {
+            return processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), member);
+        }
+
+        private TypeMirror parameterType(ExecutableElement method) {
+            return ((ExecutableType) memberType(method)).getParameterTypes().getFirst();
+        }
+
+        /**
+         * whether the mapper can name the type, it is in the package of the class
+         */
+        private boolean visible(TypeMirror propertyType) {
+            if (propertyType.getKind() == TypeKind.TYPEVAR || propertyType.getKind() == TypeKind.ERROR)
+                return false;
+            if (propertyType.getKind() == TypeKind.ARRAY)
+                return visible(((javax.lang.model.type.ArrayType) propertyType).getComponentType());
+            if (!(propertyType instanceof DeclaredType declared))
+                return true;
+            for (Element e = declared.asElement(); e instanceof TypeElement t; e = t.getEnclosingElement()) {
+                if (t.getModifiers().contains(Modifier.PRIVATE))
+                    return false;
+                if (!t.getModifiers().contains(Modifier.PUBLIC) && !processingEnv.getElementUtils()
+                        .getPackageOf(t).getQualifiedName().contentEquals(pkg))
+                    return false;
+            }
+            return true;
+        }
+
+        private TypeElement superclass(TypeElement c) {
+            TypeMirror superclass = c.getSuperclass();
+            if (!(superclass instanceof DeclaredType declared))
+                return null;
+            TypeElement element = (TypeElement) declared.asElement();
+            return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+        }
+
+        private boolean sameErasure(TypeMirror a, TypeMirror b) {
+            return processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(a),
+                    processingEnv.getTypeUtils().erasure(b));
+        }
+
+        private boolean isEnum(TypeMirror type) {
+            return type instanceof DeclaredType declared && declared.asElement().getKind() == ElementKind.ENUM;
+        }
+
+        private String erasure(TypeMirror type) {
+            TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+            if (erased instanceof DeclaredType declared)
+                return ((TypeElement) declared.asElement()).getQualifiedName().toString();
+            return erased.toString();
+        }
+
+        private String boxed(TypeMirror type) {
+            if (type.getKind().isPrimitive())
+                return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                        .getQualifiedName().toString();
+            return erasure(type);
+        }
+    }
+
+    /**
+     * java bean property of a public getter, null for other methods
+     */
+    private static String getterProperty(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)
+                || !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID
+                || name.equals("getClass"))
+            return null;
+        if (name.startsWith("get") && name.length() > 3)
+            return decapitalize(name.substring(3));
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN)
+            return decapitalize(name.substring(2));
+        return null;
+    }
+
+    /**
+     * {@link java.beans.Introspector#decapitalize}
+     */
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0)))
+            return name;
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String primitive(String boxed) {
+        return switch (boxed) {
+            case "java.lang.Long" -> "long";
+            case "java.lang.Integer" -> "int";
+            case "java.lang.Double" -> "double";
+            case "java.lang.Boolean" -> "boolean";
+            case "java.lang.Short" -> "short";
+            case "java.lang.Float" -> "float";
+            case "java.lang.Byte" -> "byte";
+            default -> boxed;
+        };
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors())
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation))
+                return mirror;
+        return null;
+    }
+
+    private static Object value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet())
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return entry.getValue().getValue();
+        return null;
+    }
+
+    /**
+     * the column name of the annotation, null when it has none
+     */
+    private static String columnName(AnnotationMirror annotation) {
+        if (annotation == null)
+            return null;
+        Object name = value(annotation, "name");
+        return name instanceof String s && !s.isEmpty() ? s : null;
+    }
+
+    private static String key(String column) {
+        return column.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static String names(List<Binding> bindings, boolean columns) {
+        StringBuilder sb = new StringBuilder();
+        for (Binding binding : bindings) {
+            if (!sb.isEmpty())
+                sb.append(", ");
+            String name = columns ? binding.column() : binding.name();
+            sb.append('"').append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,339 @@
+package com.m2a.db.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * row mappers built once per class and column layout of the result. columns are read by
+ * index with the getter of the property type and written by the {@link GeneratedRowMapper}
+ * of the class, or through method handles when it has none. see {@link BeanMapping} for
+ * how columns find their property. columns without a property are ignored, null values
+ * are not written
+ */
+public final class RowMappers {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowMappers.class);
+
+    /**
+     * layouts kept per class, more are built again on every use
+     */
+    private static final int MAX_LAYOUTS = 64;
+
+    private static final ClassValue<Map<List<String>, RowMapper<?>>> LAYOUTS = new ClassValue<>() {
+        @Override
+        protected Map<List<String>, RowMapper<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final ClassValue<Optional<GeneratedRowMapper<?>>> GENERATED = new ClassValue<>() {
+        @Override
+        protected Optional<GeneratedRowMapper<?>> computeValue(Class<?> type) {
+            String name = type.getName();
+            String pkg = type.getPackageName();
+            String simple = pkg.isEmpty() ? name : name.substring(pkg.length() + 1);
+            String mapper = (pkg.isEmpty() ? "" : pkg + ".") + simple.replace('$', '_') + RowMapperProcessor.SUFFIX;
+            try {
+                Class<?> mapperClass = Class.forName(mapper, true, type.getClassLoader());
+                if (!GeneratedRowMapper.class.isAssignableFrom(mapperClass))
+                    return Optional.empty();
+                GeneratedRowMapper<?> generated = (GeneratedRowMapper<?>) mapperClass.getDeclaredConstructor().newInstance();
+                return generated.type() == type ? Optional.of(generated) : Optional.empty();
+            } catch (ClassNotFoundException e) {
+                return Optional.empty();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOGGER.warn("could not load row mapper {} : {}", mapper, e.toString());
+                return Optional.empty();
+            }
+        }
+    };
+
+    private RowMappers() {
+    }
+
+    /**
+     * @return the mapper generated for the class, null when it has none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GeneratedRowMapper<T> generated(Class<T> type) {
+        return (GeneratedRowMapper<T>) GENERATED.get(type).orElse(null);
+    }
+
+    /**
+     * mapper of the result set columns to the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapper<T> of(Class<T> type, ResultSetMetaData meta) throws SQLException {
+        List<String> labels = labels(meta);
+        Map<List<String>, RowMapper<?>> layouts = LAYOUTS.get(type);
+        RowMapper<?> mapper = layouts.get(labels);
+        if (mapper == null) {
+            GeneratedRowMapper<T> generated = generated(type);
+            mapper = generated != null ? new GeneratedLayoutMapper<>(generated, labels)
+                    : new LayoutMapper<>(BeanMapping.of(type), labels);
+            if (layouts.size() < MAX_LAYOUTS)
+                layouts.putIfAbsent(labels, mapper);
+        }
+        return (RowMapper<T>) mapper;
+    }
+
+    /**
+     * mapper resolving the layout from the first row it maps, and again when it is given
+     * another result set. not thread safe, use one per query
+     */
+    public static <T> RowMapper<T> of(Class<T> type) {
+        return new RowMapper<>() {
+            private ResultSet resultSet;
+            private RowMapper<T> mapper;
+
+            @Override
+            public T map(ResultSet rs) throws SQLException {
+                if (rs != resultSet) {
+                    mapper = of(type, rs.getMetaData());
+                    resultSet = rs;
+                }
+                return mapper.map(rs);
+            }
+        };
+    }
+
+    private static List<String> labels(ResultSetMetaData meta) throws SQLException {
+        String[] labels = new String[meta.getColumnCount()];
+        for (int i = 1; i <= labels.length; i++) {
+            String label = meta.getColumnLabel(i);
+            labels[i - 1] = label == null || label.isEmpty() ? meta.getColumnName(i) : label;
+        }
+        return Arrays.asList(labels);
+    }
+
+    private static final class GeneratedLayoutMapper<T> implements RowMapper<T> {
+        private final GeneratedRowMapper<T> generated;
+        private final int[] indexes;
+
+        private GeneratedLayoutMapper(GeneratedRowMapper<T> generated, List<String> labels) {
+            this.generated = generated;
+            List<String> names = new ArrayList<>(generated.columns());
+            names.addAll(generated.properties());
+            this.indexes = new int[names.size()];
+            // a repeated label is bound to its last column, as its value is in the reflective mapper
+            for (int i = 0; i < labels.size(); i++)
+                for (int n = 0; n < indexes.length; n++)
+                    if (labels.get(i).equalsIgnoreCase(names.get(n)))
+                        indexes[n] = i + 1;
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            return generated.map(rs, indexes);
+        }
+    }
+
+    private static final class LayoutMapper<T> implements RowMapper<T> {
+        private final BeanMapping<T> mapping;
+        private final Binding[] bindings;
+
+        private LayoutMapper(BeanMapping<T> mapping, List<String> labels) {
+            this.mapping = mapping;
+            List<Binding> list = new ArrayList<>();
+            for (int i = 0; i < labels.size(); i++) {
+                BeanProperty property = mapping.property(labels.get(i));
+                if (property != null)
+                    list.add(binding(i + 1, property));
+            }
+            this.bindings = list.toArray(new Binding[0]);
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            T bean;
+            try {
+                bean = mapping.newInstance();
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new SQLException("could not create " + mapping.getType().getName(), t);
+            }
+            for (Binding binding : bindings) {
+                try {
+                    binding.apply(bean, rs);
+                } catch (SQLException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new SQLException("could not map column " + binding.index + " to "
+                            + mapping.getType().getName() + "." + binding.property.getName(), t);
+                }
+            }
+            return bean;
+        }
+    }
+
+    private static Binding binding(int index, BeanProperty property) {
+        Class<?> type = property.getType();
+        if (type == long.class)
+            return new LongBinding(index, property);
+        if (type == int.class)
+            return new IntBinding(index, property);
+        if (type == double.class)
+            return new DoubleBinding(index, property);
+        if (type == boolean.class)
+            return new BooleanBinding(index, property);
+        return new ObjectBinding(index, property, reader(type));
+    }
+
+    /**
+     * reads a column as the type, null for sql null
+     */
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    private static ColumnReader reader(Class<?> type) {
+        if (type == String.class)
+            return ResultSet::getString;
+        if (type == Long.class)
+            return (rs, i) -> {
+                long value = rs.getLong(i);
+                return rs.wasNull() ? null : value;
+            };
+        if (type == Integer.class)
+            return (rs, i) -> {
+                int value = rs.getInt(i);
+                return rs.wasNull() ? null : value;
+            };
+        if (type == Double.class)
+            return (rs, i) -> {
+                double value = rs.getDouble(i);
+                return rs.wasNull() ? null : value;
+            };
+        if (type == Boolean.class)
+            return (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return rs.wasNull() ? null : value;
+            };
+        if (type == BigDecimal.class)
+            return ResultSet::getBigDecimal;
+        if (type == java.util.Date.class || type == java.sql.Timestamp.class)
+            return ResultSet::getTimestamp;
+        if (type == java.sql.Date.class)
+            return ResultSet::getDate;
+        if (type == java.sql.Time.class)
+            return ResultSet::getTime;
+        if (type == LocalDate.class || type == LocalDateTime.class || type == LocalTime.class
+                || type == OffsetDateTime.class)
+            return (rs, i) -> rs.getObject(i, type);
+        return null;
+    }
+
+    private abstract static class Binding {
+        final int index;
+        final BeanProperty property;
+
+        Binding(int index, BeanProperty property) {
+            this.index = index;
+            this.property = property;
+        }
+
+        abstract void apply(Object bean, ResultSet rs) throws Throwable;
+    }
+
+    private static final class LongBinding extends Binding {
+        private final MethodHandle writer;
+
+        LongBinding(int index, BeanProperty property) {
+            super(index, property);
+            this.writer = property.writer(long.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            long value = rs.getLong(index);
+            if (!rs.wasNull())
+                writer.invokeExact(bean, value);
+        }
+    }
+
+    private static final class IntBinding extends Binding {
+        private final MethodHandle writer;
+
+        IntBinding(int index, BeanProperty property) {
+            super(index, property);
+            this.writer = property.writer(int.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            int value = rs.getInt(index);
+            if (!rs.wasNull())
+                writer.invokeExact(bean, value);
+        }
+    }
+
+    private static final class DoubleBinding extends Binding {
+        private final MethodHandle writer;
+
+        DoubleBinding(int index, BeanProperty property) {
+            super(index, property);
+            this.writer = property.writer(double.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            double value = rs.getDouble(index);
+            if (!rs.wasNull())
+                writer.invokeExact(bean, value);
+        }
+    }
+
+    private static final class BooleanBinding extends Binding {
+        private final MethodHandle writer;
+
+        BooleanBinding(int index, BeanProperty property) {
+            super(index, property);
+            this.writer = property.writer(boolean.class);
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            boolean value = rs.getBoolean(index);
+            if (!rs.wasNull())
+                writer.invokeExact(bean, value);
+        }
+    }
+
+    /**
+     * reference types and the remaining primitives, read with the getter of the type
+     * when there is one, otherwise as object and converted
+     */
+    private static final class ObjectBinding extends Binding {
+        private final ColumnReader reader;
+
+        ObjectBinding(int index, BeanProperty property, ColumnReader reader) {
+            super(index, property);
+            this.reader = reader;
+        }
+
+        @Override
+        void apply(Object bean, ResultSet rs) throws Throwable {
+            Object value = reader != null ? reader.read(rs, index) : property.convert(rs.getObject(index));
+            if (value != null)
+                property.set(bean, value);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.m2a.db.query;
+
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.worker.DBUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * reads the planner row estimate of a query instead of counting its rows
+ */
+public final class CountEstimator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CountEstimator.class);
+
+    private CountEstimator() {
+    }
+
+    /**
+     * @return estimated row count or null when the database can not estimate the query
+     */
+    public static Long estimate(DBUtil dbUtil, SqlDialect dialect, String sql, Object... params) {
+        if (!dialect.supportsCountEstimate())
+            return null;
+        try {
+            return dialect.estimateCount(dbUtil, sql, params);
+        } catch (RuntimeException e) {
+            LOGGER.warn("could not estimate row count : {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -35,5 +35,46 @@ public class GroupBy implements Iterable<GroupBy.GroupByProperty>, Serializable
         public GroupByProperty(String propertyName) {
             this.propertyName = propertyName;
         }
+
+        @Override
+        public int hashCode() {
+            return (propertyName == null) ? 0 : propertyName.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            GroupByProperty other = (GroupByProperty) obj;
+            if (propertyName == null)
+                return other.propertyName == null;
+            else return propertyName.equals(other.propertyName);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((properties == null) ? 0 : properties.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        GroupBy other = (GroupBy) obj;
+        if (properties == null)
+            return other.properties == null;
+        else return properties.equals(other.properties);
     }
 }
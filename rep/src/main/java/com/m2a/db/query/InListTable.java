@@ -0,0 +1,134 @@
+package com.m2a.db.query;
+
+import com.m2a.db.dialect.SqlDialect;
+import lombok.Getter;
+import org.hibernate.jdbc.Work;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * in list too large for placeholders on a database without array binding, loaded into
+ * a session temp table right before the query on the same connection and removed after.
+ * <p>
+ * the table is created on demand when the dialect has {@link SqlDialect#createInListTable()}
+ * (mysql), a query reads it for its first large list only, see
+ * {@link SqlDialect#supportsInListTableReuse()}. oracle needs a global temporary table created once:
+ * <pre>
+ * CREATE GLOBAL TEMPORARY TABLE qc_in_list (list_id NUMBER(10) NOT NULL, n NUMBER(19), s VARCHAR2(4000))
+ *     ON COMMIT PRESERVE ROWS;
+ * CREATE INDEX qc_in_list_n ON qc_in_list (list_id, n);
+ * CREATE INDEX qc_in_list_s ON qc_in_list (list_id, s);
+ * </pre>
+ */
+@Getter
+public final class InListTable {
+
+    public static final String TABLE = "qc_in_list";
+    /**
+     * integral values
+     */
+    public static final String NUMBER_COLUMN = "n";
+    /**
+     * string values
+     */
+    public static final String STRING_COLUMN = "s";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final SqlDialect dialect;
+    private final int listId;
+    private final String column;
+    private final List<?> values;
+
+    public InListTable(SqlDialect dialect, int listId, String column, List<?> values) {
+        this.dialect = dialect;
+        this.listId = listId;
+        this.column = column;
+        this.values = values;
+    }
+
+    /**
+     * @return temp table column holding the values or null when they can not be stored
+     */
+    static String columnFor(List<?> values) {
+        boolean integral = true;
+        boolean string = true;
+        for (Object value : values) {
+            integral &= value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte;
+            string &= value instanceof String;
+        }
+        if (integral)
+            return NUMBER_COLUMN;
+        return string ? STRING_COLUMN : null;
+    }
+
+    /**
+     * work that fills the temp table, runs the given work and clears the table again
+     */
+    public static Work around(List<InListTable> lists, Work work) {
+        return connection -> {
+            load(lists).execute(connection);
+            try {
+                work.execute(connection);
+            } finally {
+                clear(connection, lists);
+            }
+        };
+    }
+
+    /**
+     * work that fills the temp table, for statements outliving the work like cursors
+     */
+    public static Work load(List<InListTable> lists) {
+        return connection -> {
+            String ddl = lists.getFirst().getDialect().createInListTable();
+            if (ddl != null) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute(ddl);
+                }
+            }
+            // rows left behind by a failed statement must not leak into this query
+            clear(connection, lists);
+            fill(connection, lists);
+        };
+    }
+
+    public static Work unload(List<InListTable> lists) {
+        return connection -> clear(connection, lists);
+    }
+
+    private static void fill(Connection connection, List<InListTable> lists) throws SQLException {
+        for (InListTable list : lists) {
+            String sql = "INSERT INTO " + TABLE + " (list_id, " + list.getColumn() + ") VALUES (?, ?)";
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                int pending = 0;
+                for (Object value : list.getValues()) {
+                    ps.setInt(1, list.getListId());
+                    ps.setObject(2, value);
+                    ps.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0)
+                    ps.executeBatch();
+            }
+        }
+    }
+
+    private static void clear(Connection connection, List<InListTable> lists) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE list_id = ?")) {
+            for (InListTable list : lists) {
+                ps.setInt(1, list.getListId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.m2a.db.query;
+
+import com.m2a.db.mapper.BeanMapping;
+import com.m2a.db.mapper.BeanProperty;
+import com.m2a.db.query.Sort.Order;
+import com.m2a.enums.Direction;
+import com.m2a.reflections.ReflectionUtil;
+import com.m2a.util.StringUtil;
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * opaque continuation token of keyset paging, holds the sort values of the last row
+ * of a page and a fingerprint of the sort so a token can not be replayed against a
+ * different order. values are written with an explicit type tag, never through java
+ * serialization, because tokens come back from clients
+ */
+public final class KeysetToken {
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte STRING = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte SQL_DATE = 6;
+    private static final byte DATE = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte LOCAL_DATE = 10;
+    private static final byte LOCAL_DATE_TIME = 11;
+    private static final byte OFFSET_DATE_TIME = 12;
+    private static final byte UUID_VALUE = 13;
+
+    private KeysetToken() {
+    }
+
+    public static String encode(Sort sort, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(fingerprint(sort));
+            out.writeShort(values.length);
+            for (Object value : values)
+                write(out, value);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not write continuation token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    public static Object[] decode(Sort sort, String token) {
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readInt() != fingerprint(sort))
+                throw new IllegalArgumentException("continuation token does not belong to this sort");
+            int size = in.readShort();
+            if (size != sortSize(sort))
+                throw new IllegalArgumentException("continuation token does not belong to this sort");
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++)
+                values[i] = read(in);
+            if (in.available() > 0)
+                throw new IllegalArgumentException("invalid continuation token");
+            return values;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("invalid continuation token", e);
+        }
+    }
+
+    /**
+     * sort values of the last row of the previous page, null for the first page
+     *
+     * @param customOrder order column or sort expression set besides the sort
+     */
+    static Object[] lastValues(Sort sort, String token, boolean customOrder) {
+        if (sort == null || customOrder)
+            throw new IllegalStateException("keyset paging is only supported with sort");
+        for (Order order : sort) {
+            if (Direction.QUERY.equals(order.getDirection()))
+                throw new IllegalStateException("keyset paging does not support query sort : " + order.getProperty());
+        }
+        if (StringUtil.isEmpty(token))
+            return null;
+        Object[] lastValues = decode(sort, token);
+        int i = 0;
+        for (Order order : sort) {
+            if (lastValues[i++] == null && !QueryShape.nullsAware(order.getDirection()))
+                throw new IllegalArgumentException("keyset column " + order.getProperty()
+                        + " is null, nullable columns need a nulls first / nulls last direction");
+        }
+        return lastValues;
+    }
+
+    static BitSet nulls(Object[] lastValues) {
+        if (lastValues == null)
+            return null;
+        BitSet nulls = new BitSet(lastValues.length);
+        for (int i = 0; i < lastValues.length; i++) {
+            if (lastValues[i] == null)
+                nulls.set(i);
+        }
+        return nulls;
+    }
+
+    /**
+     * token of the page following the given last row, a map or a mapped bean
+     */
+    static String next(Sort sort, Object lastRow) {
+        List<Object> lastValues = new ArrayList<>();
+        for (Order order : sort)
+            lastValues.add(value(lastRow, order.getProperty()));
+        return encode(sort, lastValues.toArray());
+    }
+
+    /**
+     * the value of the column in a map, in a bean the value of the property the column is
+     * mapped to by {@link BeanMapping}
+     */
+    private static Object value(Object row, String property) {
+        String column = property.substring(property.lastIndexOf('.') + 1);
+        if (row instanceof Map<?, ?> map)
+            return map.get(column);
+        BeanProperty mapped = BeanMapping.of(row.getClass()).property(column);
+        String name = mapped == null ? column : mapped.getName();
+        Field field = ReflectionUtil.getField(row.getClass(), name);
+        try {
+            if (field != null) {
+                field.setAccessible(true);
+                return field.get(row);
+            }
+            if (mapped != null && PropertyUtils.isReadable(row, name))
+                return PropertyUtils.getSimpleProperty(row, name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("keyset column not readable : " + column, e);
+        }
+        throw new IllegalStateException("keyset column not found in result : " + column);
+    }
+
+    /**
+     * stable across jvm instances, unlike {@link Sort#hashCode()} which hashes enum identities
+     */
+    private static int fingerprint(Sort sort) {
+        int result = 1;
+        for (Order order : sort) {
+            result = 31 * result + order.getProperty().hashCode();
+            result = 31 * result + order.getDirection().name().hashCode();
+        }
+        return result;
+    }
+
+    private static int sortSize(Sort sort) {
+        List<Order> orders = new ArrayList<>();
+        sort.forEach(orders::add);
+        return orders.size();
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case Long l -> {
+                out.writeByte(LONG);
+                out.writeLong(l);
+            }
+            case Integer i -> {
+                out.writeByte(INTEGER);
+                out.writeInt(i);
+            }
+            case Short s -> {
+                out.writeByte(INTEGER);
+                out.writeInt(s);
+            }
+            case Byte b -> {
+                out.writeByte(INTEGER);
+                out.writeInt(b);
+            }
+            case BigDecimal d -> {
+                out.writeByte(DECIMAL);
+                out.writeUTF(d.toString());
+            }
+            case BigInteger d -> {
+                out.writeByte(DECIMAL);
+                out.writeUTF(d.toString());
+            }
+            case Double d -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(d);
+            }
+            case Float f -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(f);
+            }
+            case String s -> {
+                byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING);
+                out.writeInt(utf.length);
+                out.write(utf);
+            }
+            case Timestamp t -> {
+                out.writeByte(TIMESTAMP);
+                out.writeLong(t.getTime());
+                out.writeInt(t.getNanos());
+            }
+            case java.sql.Date d -> {
+                out.writeByte(SQL_DATE);
+                out.writeLong(d.getTime());
+            }
+            case Date d -> {
+                out.writeByte(DATE);
+                out.writeLong(d.getTime());
+            }
+            case Boolean b -> {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(b);
+            }
+            case LocalDate d -> {
+                out.writeByte(LOCAL_DATE);
+                out.writeLong(d.toEpochDay());
+            }
+            case LocalDateTime d -> {
+                out.writeByte(LOCAL_DATE_TIME);
+                out.writeUTF(d.toString());
+            }
+            case OffsetDateTime d -> {
+                out.writeByte(OFFSET_DATE_TIME);
+                out.writeUTF(d.toString());
+            }
+            case UUID u -> {
+                out.writeByte(UUID_VALUE);
+                out.writeLong(u.getMostSignificantBits());
+                out.writeLong(u.getLeastSignificantBits());
+            }
+            default -> throw new IllegalArgumentException(
+                    "type can not be used as keyset value : " + value.getClass().getName());
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case LONG -> in.readLong();
+            case INTEGER -> in.readInt();
+            case DECIMAL -> new BigDecimal(in.readUTF());
+            case DOUBLE -> in.readDouble();
+            case STRING -> {
+                int length = in.readInt();
+                if (length < 0 || length > in.available())
+                    throw new IllegalArgumentException("invalid continuation token");
+                yield new String(in.readNBytes(length), StandardCharsets.UTF_8);
+            }
+            case TIMESTAMP -> {
+                Timestamp t = new Timestamp(in.readLong());
+                t.setNanos(in.readInt());
+                yield t;
+            }
+            case SQL_DATE -> new java.sql.Date(in.readLong());
+            case DATE -> new java.sql.Timestamp(in.readLong());
+            case BOOLEAN -> in.readBoolean();
+            case LOCAL_DATE -> LocalDate.ofEpochDay(in.readLong());
+            case LOCAL_DATE_TIME -> LocalDateTime.parse(in.readUTF());
+            case OFFSET_DATE_TIME -> OffsetDateTime.parse(in.readUTF());
+            case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+            default -> throw new IllegalArgumentException("invalid continuation token");
+        };
+    }
+}
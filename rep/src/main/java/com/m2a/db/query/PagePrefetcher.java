@@ -0,0 +1,97 @@
+package com.m2a.db.query;
+
+import com.m2a.db.worker.DBUtil;
+import com.m2a.db.worker.SessionScope;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * reads the next page of a {@link QueryController} in the background, one instance is
+ * shared by the application. a hibernate session is not thread safe, so every prefetch
+ * runs on a session of its own opened through the {@link SessionScope}.
+ * <p>
+ * concurrency is bounded by the thread count and the queue size, a prefetch that does
+ * not fit is dropped, the page is then read when it is requested
+ */
+public class PagePrefetcher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 32;
+    /**
+     * pages with more rows are not prefetched
+     */
+    public static final int DEFAULT_MAX_ROWS = 1000;
+
+    private final SessionScope sessionScope;
+    private final ThreadPoolExecutor executor;
+    private final int maxRows;
+
+    public PagePrefetcher(SessionFactory sessionFactory) {
+        this(SessionScope.of(sessionFactory), DEFAULT_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * hibernate free mode, every prefetch borrows a connection of the data source
+     */
+    public PagePrefetcher(DataSource dataSource) {
+        this(SessionScope.of(dataSource), DEFAULT_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_ROWS);
+    }
+
+    public PagePrefetcher(SessionScope sessionScope, int threads, int queueSize, int maxRows) {
+        if (sessionScope == null)
+            throw new IllegalArgumentException("session scope can not be null");
+        this.sessionScope = sessionScope;
+        this.maxRows = maxRows;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "page-prefetch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return the page being read or null when the prefetcher is saturated
+     */
+    <T> CompletableFuture<T> submit(Function<DBUtil, T> read) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    sessionScope.run(dbUtil -> future.complete(read.apply(dbUtil)));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("could not prefetch page : {}", e.toString());
+                    future.completeExceptionally(e);
+                }
+                // a scope that never ran the action must not leave the page pending
+                future.cancel(false);
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return future;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
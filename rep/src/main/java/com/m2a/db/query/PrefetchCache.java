@@ -0,0 +1,120 @@
+package com.m2a.db.query;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * prefetched pages of one user session, keyed by the sql and bound values of the page
+ * query. holds at most max entries pages, the oldest is dropped first. a page is read on
+ * a connection of its own, so one read more than max age ago is never served
+ */
+public class PrefetchCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 5_000;
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final LinkedHashMap<Key, CompletableFuture<Page>> entries = new LinkedHashMap<>();
+
+    public PrefetchCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public PrefetchCache(int maxEntries, long maxAgeMillis) {
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    /**
+     * rows and window count of a prefetched page, read at the given nano time
+     */
+    record Page(List<?> rows, Long count, long read) {
+
+        Page(List<?> rows, Long count) {
+            this(rows, count, System.nanoTime());
+        }
+    }
+
+    synchronized void put(Key key, CompletableFuture<Page> page) {
+        CompletableFuture<Page> previous = entries.remove(key);
+        if (previous != null)
+            previous.cancel(false);
+        entries.put(key, page);
+        Iterator<Map.Entry<Key, CompletableFuture<Page>>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next().getValue().cancel(false);
+            it.remove();
+        }
+    }
+
+    synchronized boolean contains(Key key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * removes the page, never waiting for it. one still being read is cancelled, the caller
+     * reads the page itself in about the time waiting would take
+     *
+     * @return the page or null when there is none, it is not read yet, it failed or it is too old
+     */
+    Page take(Key key) {
+        CompletableFuture<Page> future;
+        synchronized (this) {
+            future = entries.remove(key);
+        }
+        if (future == null)
+            return null;
+        if (!future.isDone()) {
+            future.cancel(false);
+            return null;
+        }
+        if (future.isCompletedExceptionally())
+            return null;
+        Page page = future.join();
+        return System.nanoTime() - page.read() > maxAgeNanos ? null : page;
+    }
+
+    public synchronized void clear() {
+        entries.values().forEach(page -> page.cancel(false));
+        entries.clear();
+    }
+
+    /**
+     * sql, bound values and row type of a page query
+     */
+    static final class Key {
+        private final String sql;
+        private final Object[] params;
+        private final Class<?> type;
+
+        Key(String sql, Object[] params, Class<?> type) {
+            this.sql = sql;
+            this.params = params;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sql.hashCode();
+            result = 31 * result + Arrays.deepHashCode(params);
+            result = 31 * result + (type == null ? 0 : type.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return sql.equals(other.sql) && Arrays.deepEquals(params, other.params) && type == other.type;
+        }
+    }
+}
@@ -1,25 +1,28 @@
 package com.m2a.db.query;
 
-import com.m2a.db.query.GroupBy.GroupByProperty;
-import com.m2a.db.query.Sort.Order;
-import com.m2a.db.query.WhereClause.QueryParam;
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.worker.AsyncDBUtil;
+import com.m2a.db.worker.CountingRowProcessor;
 import com.m2a.db.worker.DBUtil;
-import com.m2a.enums.Direction;
+import com.m2a.db.worker.DbListWork;
+import com.m2a.db.worker.DbObjectWork;
+import com.m2a.db.worker.DbScalarWork;
+import com.m2a.db.worker.DbWork;
+import com.m2a.enums.CountPolicy;
 import com.m2a.enums.Operator;
-import com.m2a.reflections.ReflectionUtil;
 import com.m2a.util.ArrayUtil;
 import com.m2a.util.CollectionUtil;
-import com.m2a.util.RegexUtil;
 import com.m2a.util.StringUtil;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.apache.commons.dbutils.RowProcessor;
+import org.hibernate.jdbc.Work;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * <p>
@@ -45,24 +48,16 @@ import java.util.regex.Pattern;
  * 4. add group by (Optional) <br />
  * 5. call createQuery method <br />
  * 6. call execute method <br />
+ * <br />
+ * for keyset paging set keysetPaging and a sort, then pass nextContinuationToken
+ * of the executed page back as continuationToken of the next one <br />
  */
 @Getter
 @Setter
 public class QueryController {
 
-    private static final Logger logger = Logger.getLogger(QueryController.class.getName());
-    private final static Pattern pattern =
-            Pattern.compile("from(.+?)(LEFT|RIGHT|INNER)", Pattern.CASE_INSENSITIVE);
-    private final static Pattern FROM_PATTERN =
-            Pattern.compile("(from)\\s(.*)", Pattern.CASE_INSENSITIVE);
-    private static final String SPACE = " ";
-
     private String query;
 
-    private StringBuffer queryBuffer;
-
-    private StringBuffer countQueryBuffer;
-
     private List<WhereClause> whereClauseList;
 
     private List<String> queryAppender;
@@ -71,8 +66,6 @@ public class QueryController {
 
     private GroupBy groupBy;
 
-    private Root root;
-
     private Integer firstResult;
 
     private Integer maxResults;
@@ -89,6 +82,67 @@ public class QueryController {
 
     private SortDecorator sortDecorator;
 
+    /**
+     * seek past the last row of the previous page instead of skipping first result rows,
+     * pages are addressed by {@link #continuationToken} and ordered by {@link #sort}
+     */
+    private boolean keysetPaging;
+
+    /**
+     * token of the page to read in keyset paging, null for the first page
+     */
+    private String continuationToken;
+
+    /**
+     * token of the following page, set by execute methods when a next page exists
+     */
+    private String nextContinuationToken;
+
+    /**
+     * read the total count with the page through {@code count(*) over()} instead of a
+     * separate count query, needs window functions (mysql 8+). not used with keyset paging
+     */
+    private boolean windowCount;
+
+    public static final int DEFAULT_COUNT_CAP = 10000;
+
+    /**
+     * how {@link #getResultCount()} is computed, window count is only used with exact count
+     */
+    private CountPolicy countPolicy = CountPolicy.EXACT;
+
+    /**
+     * upper bound of {@link CountPolicy#CAPPED} counts
+     */
+    private int countCap = DEFAULT_COUNT_CAP;
+
+    /**
+     * true when the capped count reached the cap, the real count is larger
+     */
+    private boolean resultCountCapped;
+
+    /**
+     * in lists larger than this are bound as one array or loaded into a temp table
+     * instead of placeholders, see {@link WhereClauseBinder}
+     */
+    private int inListThreshold = WhereClauseBinder.DEFAULT_IN_LIST_THRESHOLD;
+
+    /**
+     * rows fetched per round trip by {@link #stream(Query)}
+     */
+    private int fetchSize = DBUtil.DEFAULT_FETCH_SIZE;
+
+    /**
+     * shared executor reading the next page in the background, prefetch is on when
+     * both prefetcher and prefetch cache are set
+     */
+    private PagePrefetcher prefetcher;
+
+    /**
+     * prefetched pages of the user session, kept for example in the http session
+     */
+    private PrefetchCache prefetchCache;
+
     private final DBUtil dbUtil;
 
     public QueryController(DBUtil dbUtil) {
@@ -150,70 +204,64 @@ public class QueryController {
         if (this.query == null) {
             throw new IllegalArgumentException("You have to provide query");
         }
-        //
-        queryBuffer = new StringBuffer(this.query.replaceAll("[\\r|\\t\\n]", " "));
+        Integer maxResults = getMaxResults();
+        Integer firstResult = keysetPaging ? null : getFirstResult();
+        QueryTemplate template = QueryPlanCache.template(this.query, queryAppender);
         // where clause is not null means it specifies outside of restrictions
         // method so don't add restrictions
         if (whereClauseList == null) {
             whereClauseList = new ArrayList<WhereClause>();
             addRestrictions();
         }
-
-        applyAppender(queryBuffer);
-
-        applyWhere(queryBuffer);
-        // Group
-        if (groupBy != null)
-            applyGroupBy(queryBuffer);
-        // Sort
-        applyOrderBy();
-        //
-        if (dbUtil.isDatabaseOracle()) {
-            StringBuilder oracleQ = new StringBuilder();
-            oracleQ.append(" SELECT *   FROM (SELECT a.*, rownum rn  FROM ( ");
-            oracleQ.append(queryBuffer.toString());
-            if (getMaxResults() != null) {
-                oracleQ.append(" WHERE rownum <= ").append(getMaxResults() + 1).append("  ) a  ) ");
-            } else {
-                oracleQ.append(" a  ) ");
-            }
-            if (getFirstResult() != null) {
-                if (getFirstResult() > 0) {
-                    oracleQ.append(" WHERE rn >= ").append(getFirstResult());
-                }
-            }
-            return new Query(oracleQ.toString(), values);
-        } else if (dbUtil.isDatabaseMySQL()) {
-            //Mysql            
-            if (getMaxResults() != null) {
-                if (getFirstResult() != null) {
-                    if (getFirstResult() > 0)
-                        queryBuffer.append(" limit ").append(getFirstResult() - 1).append(",").append(getMaxResults() + 1);
-                } else {
-                    queryBuffer.append(" limit ").append(getMaxResults() + 1);
-                }
-            }
-
-            return new Query(queryBuffer.toString(), values);
-        } else {
-            // not oracle
-            if (getMaxResults() != null)
-                queryBuffer.append(" limit ").append(getMaxResults() + 1);
-
-            if (getFirstResult() != null) {
-                if (getFirstResult() > 0)
-                    queryBuffer.append(" offset ").append(getFirstResult());
-            }
-            return new Query(queryBuffer.toString(), values);
-        }
-
+        List<Object> queryValues = new ArrayList<>();
+        List<InListTable> inLists = new ArrayList<>();
+        SqlDialect dialect = dbUtil.getDialect();
+        List<QueryShape.Clause> where = WhereClauseBinder.bind(whereClauseList, template.getRootAlias(), dialect,
+                inListThreshold, queryValues, inLists);
+        String sortExpression = getSortDecorator() != null ? getSortDecorator().sortExpression() : null;
+        Object[] lastValues = keysetPaging ? KeysetToken.lastValues(sort, continuationToken,
+                StringUtil.isNotEmpty(getOrderColumn()) || StringUtil.isNotEmpty(sortExpression)) : null;
+        boolean countOver = windowCount && !keysetPaging && CountPolicy.EXACT.equals(countPolicy);
+        QueryShape.Paging paging = new QueryShape.Paging(dialect, maxResults != null,
+                firstResult != null && firstResult > 0, KeysetToken.nulls(lastValues), countOver);
+        QueryShape shape = new QueryShape(QueryShape.Kind.SELECT, template, where, groupBy, sort,
+                getOrderColumn(), getOrderDirection(), sortExpression, paging);
+        String sql = QueryPlanCache.sql(shape);
+        shape.bindKeyset(queryValues, lastValues);
+        shape.bindPaging(queryValues, maxResults, firstResult);
+        values = queryValues;
+        Query q = new Query(sql, values);
+        q.setInLists(inLists);
+        if (countOver)
+            q.setCountColumn(QueryShape.RESULT_COUNT_COLUMN);
+        return q;
+    }
+
+    private void updateContinuationToken(List<?> list) {
+        nextContinuationToken = null;
+        if (keysetPaging && isNextExists())
+            nextContinuationToken = KeysetToken.next(sort, list.get(getMaxResults() - 1));
+    }
+
+    private static CountingRowProcessor countingRowProcessor(Query queryRunner) {
+        if (queryRunner.getCountColumn() == null)
+            return null;
+        return new CountingRowProcessor(queryRunner.getCountColumn());
     }
 
-    private void applyAppender(StringBuffer qb) {
-        if (CollectionUtil.isNotEmpty(queryAppender)) {
-            for (String q : queryAppender) {
-                qb.append(q);
-            }
+    /**
+     * result count comes from the window column of the first row, an empty first
+     * page has nothing to count, other empty pages leave it to the count query
+     */
+    private void updateResultCount(CountingRowProcessor counter, List<?> list) {
+        if (counter == null)
+            return;
+        if (counter.getCount() != null) {
+            resultCount = counter.getCount();
+        } else if (list.isEmpty()) {
+            Integer fr = getFirstResult();
+            if (fr == null || fr == 0)
+                resultCount = 0L;
         }
     }
 
@@ -226,395 +274,225 @@ public class QueryController {
         }
     }
 
-    private void applyGroupBy(StringBuffer sb) {
-        if (!RegexUtil.find(sb.toString(), "Group By"))
-            sb.append(" Group By ");
-        int i = 0;
-        for (GroupByProperty prop : groupBy) {
-            if (i > 0)
-                sb.append(", ");
-            if (prop.getPropertyName().contains("."))
-                sb.append(prop.getPropertyName());
-            else
-                sb.append(this.root.getAlias()).append(".").append(prop.getPropertyName());
-            i++;
-        }
+    public interface SortDecorator {
+        String sortExpression();
     }
 
-    /**
-     * <p>
-     * sort first priority is based on order column from query parameter second.
-     * it's based on cookie third. it's based on default sort api
-     * </p>
-     */
-    private void applyOrderBy() {
-        StringBuffer orderWrapper = new StringBuffer().append("select * from ( ");
-        orderWrapper.append(queryBuffer).append(" ) ").append(root.getAlias());
-        String sortExpression = "";
-        if (getSortDecorator() != null) {
-            sortExpression = getSortDecorator().sortExpression();
-        }
-        if (sort != null || StringUtil.isNotEmpty(getOrderColumn()) || StringUtil.isNotEmpty(sortExpression)) {
-            orderWrapper.append(" Order By ");
-        }
-        if (StringUtil.isNotEmpty(getOrderColumn())) {
-            // first priority
-            orderWrapper.append(getOrderColumn()).append(" ").append(getOrderDirection() == null ? "desc" : getOrderDirection());
-        } else {
-            if (StringUtil.isNotEmpty(sortExpression)) {
-                orderWrapper.append(" ").append(sortExpression);
-            } else {
-                if (sort != null) {
-                    int i = 0;
-                    for (Order order : sort) {
-                        String orderProperty = order.getProperty();
-                        if (i > 0)
-                            orderWrapper.append(", ");
-                        Direction direction = order.getDirection();
-                        if (direction.equals(Direction.QUERY)) {
-                            // put all query in order by
-                            orderWrapper.append(" ").append(orderProperty);
-                        } else {
-                            if (orderProperty.contains("."))
-                                orderWrapper.append(orderProperty).append(" ").append(direction.getLabel());
-                            else
-                                orderWrapper.append(this.root.getAlias()).append(".").append(orderProperty).append(" ")
-                                        .append(direction.getLabel());
-                        }
-                        i++;
-                    }
-                }
-            }
-        }
-        this.queryBuffer = orderWrapper;
+    protected Query createCountQuery() {
+        return createCountQuery(QueryShape.Kind.COUNT, QueryShape.Paging.NONE);
     }
 
-    public interface SortDecorator {
-        String sortExpression();
+    private Query createCountQuery(QueryShape.Kind kind, QueryShape.Paging paging) {
+        if (StringUtil.isEmpty(this.query))
+            throw new IllegalArgumentException("query is not set");
+        QueryTemplate template = QueryPlanCache.template(this.query, queryAppender);
+        if (whereClauseList == null) {
+            whereClauseList = new ArrayList<>();
+            addRestrictions();
+        }
+        List<Object> countValues = new ArrayList<>();
+        List<InListTable> inLists = new ArrayList<>();
+        List<QueryShape.Clause> where = WhereClauseBinder.bind(whereClauseList, template.getRootAlias(),
+                dbUtil.getDialect(), inListThreshold, countValues, inLists);
+        QueryShape shape = QueryShape.Kind.ESTIMATE.equals(kind) ? QueryShape.estimate(template, where)
+                : QueryShape.count(template, where, groupBy, paging);
+        String sql = QueryPlanCache.sql(shape);
+        shape.bindPaging(countValues, countCap, null);
+        values = countValues;
+        Query q = new Query(sql, values);
+        q.setInLists(inLists);
+        return q;
     }
 
-    private void applyWhere(StringBuffer queryBuffer) {
-        values = new ArrayList<>(); // must reset values
-        int wcCount = 0;
-        queryBuffer.append(" ");
-        for (WhereClause wc : whereClauseList) {
-            parseWhereClause(wc, queryBuffer, wcCount);
-            wcCount++;
-        }
-        queryBuffer.append(" ");
-    }
-
-    private void parseWhereClause(WhereClause wc, StringBuffer mainQuery, int clauseCount) {
-        StringBuilder whereStringBuffer = new StringBuilder();
-        int queryCount = 0;
-        boolean useOperandGrouping = false;
-        Operator logicalOperand = wc.getLogicalOperand();
-        for (QueryParam qp : wc) {
-            Object value = qp.getObject(); // can be comma separated seam
-            // expression
-            Operator paramOperator = qp.getOperator();
-            if (!(Operator.IS_NULL.equals(paramOperator)
-                    || Operator.NOT_NULL.equals(paramOperator))) {
-                if (shouldIgnoreClause(value))
-                    continue;
-            }
-            //
-            useOperandGrouping = true;
-            //
-            String columnExpression = qp.getColumnExpression();
-            if (!columnExpression.contains("."))
-                columnExpression = root.getAlias() + "." + columnExpression;
-
-            Function function = qp.getFunction();
-            if (function != null)
-                columnExpression = function.parseColumn(columnExpression);
-
-            value = convertToSqlDate(value);
-
-            if (queryCount > 0)
-                whereStringBuffer.append(SPACE).append(logicalOperand.name()).append(SPACE);
-            queryCount++;
-
-            if (Operator.QUERY.equals(paramOperator)) {
-                whereStringBuffer.append(columnExpression);
-                parseValue(value, paramOperator, function);
-            } else {
-                whereStringBuffer.append(columnExpression);
-                if (Operator.EQUAL.equals(paramOperator))
-                    whereStringBuffer.append(" = ?");
-                if (Operator.NOT_EQUAL.equals(paramOperator))
-                    whereStringBuffer.append(" <> ?");
-                if (Operator.GT.equals(paramOperator))
-                    whereStringBuffer.append(" > ?");
-                if (Operator.GTE.equals(paramOperator))
-                    whereStringBuffer.append(" >= ?");
-                if (Operator.LT.equals(paramOperator))
-                    whereStringBuffer.append(" < ?");
-                if (Operator.LTE.equals(paramOperator))
-                    whereStringBuffer.append(" <= ?");
-                if (Operator.LIKE.equals(paramOperator) ||
-                        Operator.BEGIN_WITH.equals(paramOperator)
-                        || Operator.END_WITH.equals(paramOperator)) {
-                    whereStringBuffer.append(" LIKE ? ");
-                }
-                if (Operator.IS_NULL.equals(paramOperator)) {
-                    whereStringBuffer.append(" is null ");
-                    continue;
-                }
-                if (Operator.NOT_NULL.equals(paramOperator)) {
-                    whereStringBuffer.append(" is not null ");
-                    continue;
-                }
-
-                if (Operator.IN.equals(paramOperator) || Operator.NOT_IN.equals(paramOperator)) {
-                    value = In(value);
-                    if (Operator.IN.equals(paramOperator))
-                        whereStringBuffer.append(" IN( ");
-                    if (Operator.NOT_IN.equals(paramOperator))
-                        whereStringBuffer.append(" NOT IN( ");
-                    whereStringBuffer.append(value);
-                    whereStringBuffer.append(" ) ");
-                    continue;
-                }
-                parseValue(value, paramOperator, function);
-            }
-        }
-        if (useOperandGrouping) {
-            if (RegexUtil.find(mainQuery.toString(), "where")) {
-                mainQuery.append(" AND ");
-            }
-            if (queryBuffer != null && !RegexUtil.find(queryBuffer.toString(), "where")) {
-                mainQuery.append(" WHERE ");
-            }
-            if (countQueryBuffer != null && !RegexUtil.find(countQueryBuffer.toString(), "where")) {
-                mainQuery.append(" WHERE ");
-            }
+    private Object[] bindParameters(Object[] params, List<Object> paramValues) {
+        if (params != null && CollectionUtil.isNotEmpty(paramValues)) {
+            return ArrayUtil.addAll(params, paramValues.toArray(new Object[0]));
         }
-        if (useOperandGrouping) {
-            StringBuilder groupBuffer = new StringBuilder();
-            if (clauseCount > 0)
-                groupBuffer.append(SPACE).append(wc.getLogicalOperandClause().name()).append(SPACE);
-            Operator groupOperand = wc.getGroupOperand();
-            if (groupOperand.equals(Operator.GROUP))
-                groupBuffer.append(" ( ");
-            groupBuffer.append(whereStringBuffer.toString());
-            if (groupOperand.equals(Operator.GROUP))
-                groupBuffer.append(" ) ");
-            mainQuery.append(groupBuffer);
+        if (params != null) {
+            return params;
         }
+        if (CollectionUtil.isNotEmpty(paramValues))
+            return paramValues.toArray(new Object[0]);
+        return null;
     }
 
-    private Object convertToSqlDate(Object value) {
-        if (value instanceof Date d)
-            // jdbc uses sql date (convert java util date to sql date
-            value = new java.sql.Date(d.getTime());
-        return value;
-    }
-
-    private boolean shouldIgnoreClause(Object value) {
-        if (value == null)
-            return true;
-        if (value instanceof String)
-            return String.valueOf(value).trim().isEmpty();
-        return false;
+    private Object[] parameters(Query queryRunner) {
+        Object[] parameters = bindParameters(this.queryParamValues, queryRunner.getVals());
+        return parameters == null ? new Object[0] : parameters;
     }
 
     /**
-     * @param value comma separated String/Int or List of String/Int
+     * runs the select on a replica when the db util has any, a query with in lists loads
+     * them into the temp table first and stays on the primary, replicas may be read only
      */
-    private String In(Object value) {
-        StringBuilder sb = new StringBuilder();
-        if (value.getClass().isArray()) {
-            Object[] inObject = (Object[]) value;
-            for (int j = 0; j < inObject.length; j++) {
-                Object objectVal = inObject[j];
-                if (j > 0)
-                    sb.append(", ");
-                if (objectVal instanceof String)
-                    sb.append("'").append(objectVal).append("'");
-                else
-                    sb.append(objectVal);
-            }
-        }
-        if (ReflectionUtil.isSubclass(value.getClass(), Collection.class)) {
-            assert value instanceof List<?>;
-            List<?> inObject = (List<?>) value;
-            for (int j = 0; j < inObject.size(); j++) {
-                Object objectVal = inObject.get(j);
-                if (j > 0)
-                    sb.append(", ");
-                if (objectVal instanceof String)
-                    sb.append("'").append(objectVal).append("'");
-                else
-                    sb.append(objectVal);
-            }
-        }
-        if (value instanceof String inValue) {
-            if (isSeamExpression(inValue))
-                throw new UnsupportedOperationException("in values can not be Seam Expression");
-            sb.append(inValue);
-        }
-        return sb.toString();
+    private void doWork(Query queryRunner, Work work) {
+        doWork(dbUtil, queryRunner, work);
+    }
+
+    private static void doWork(DBUtil dbUtil, Query queryRunner, Work work) {
+        List<InListTable> inLists = queryRunner.getInLists();
+        if (CollectionUtil.isEmpty(inLists))
+            dbUtil.doReadWork(work);
+        else
+            dbUtil.doWork(InListTable.around(inLists, work));
+        dbUtil.logger(queryRunner.getQueryToExecute());
     }
 
     /**
-     * used only for query operator
+     * params take precedence over query where values
      */
-    private void parseValue(Object val, Operator paramOperator, Function function) {
-
-        if (val instanceof String valueExpression) {
-            if (valueExpression.contains(",")) {
-                // more than one parameter value
-                String[] valueItem = valueExpression.split(",");
-                for (String item : valueItem) {
-
-                    parseExpression(item, paramOperator, function);
-                }
-            } else {
-                parseExpression(valueExpression, paramOperator, function);
-            }
-
-        } else {
-            // is not string
-            if (val != null) {
-                if (function != null)
-                    val = function.parseColumnValue(val);
-                val = convertToSqlDate(val);
-                values.add(val);
-            }
-        }
+    public List<Map<String, Object>> execute(Query queryRunner) {
+        return read(queryRunner, null);
     }
 
-    private void parseExpression(String valueExpression, Operator paramOperator, Function function) {
-        // is seam expression
-        Object evalValue = null;
-        if (StringUtil.isNotEmpty(valueExpression)) {
-            evalValue = valueExpression;
-        }
-
-        if (evalValue != null) {
-            if (Operator.LIKE.equals(paramOperator)) {
-                evalValue = "%" + evalValue + "%";
-            }
-            if (Operator.BEGIN_WITH.equals(paramOperator)) {
-                evalValue = evalValue + "%";
-            }
-            if (Operator.END_WITH.equals(paramOperator)) {
-                evalValue = "%" + evalValue;
-            }
-            if (function != null)
-                evalValue = function.parseColumnValue(evalValue);
-            evalValue = convertToSqlDate(evalValue);
-            values.add(evalValue);
-        }
+    public <T> T executeForObject(Class<T> clz, Query queryRunner) {
+        DbObjectWork<T> dbWork = new DbObjectWork<>(queryRunner.getQueryToExecute(), parameters(queryRunner), clz);
+        doWork(queryRunner, dbWork);
+        return dbWork.getInstance();
     }
 
-    private boolean isSeamExpression(Object valueExpression) {
-        if (valueExpression instanceof String ve)
-            return ve.startsWith("#{") && ve.endsWith("}");
-        return false;
+    public <E> List<E> executeForList(Class<E> clz, Query queryRunner) {
+        return read(queryRunner, clz);
     }
 
-    protected Query createCountQuery() {
-        if (StringUtil.isEmpty(this.query))
-            throw new IllegalArgumentException("query is not set");
-        countQueryBuffer = new StringBuffer()
-                .append(this.query.replaceAll("[\\r|\\t\\n]", " "));
-
-        if (whereClauseList == null) {
-            whereClauseList = new ArrayList<>();
-            addRestrictions();
-        }
-        applyAppender(countQueryBuffer);
-        applyWhere(countQueryBuffer);
+    /**
+     * {@link #execute(Query)} on a virtual thread of the async db util, result list, count
+     * and continuation token are updated when the future completes and the controller must
+     * not be used until then. prefetched pages are not looked up
+     */
+    public CompletableFuture<List<Map<String, Object>>> executeAsync(AsyncDBUtil asyncDBUtil, Query queryRunner) {
+        return readAsync(asyncDBUtil, queryRunner, null);
+    }
 
-        //
-        StringBuffer sb = new StringBuffer().append("select count(*) from ( ");
-        sb.append(countQueryBuffer.toString());
-        sb.append(" ) ").append(root.getAlias());
-        //
+    public <E> CompletableFuture<List<E>> executeForListAsync(Class<E> clz, AsyncDBUtil asyncDBUtil,
+                                                              Query queryRunner) {
+        return readAsync(asyncDBUtil, queryRunner, clz);
+    }
 
-        if (groupBy != null)
-            applyGroupBy(sb);
-        return new Query(sb.toString(), values);
+    private <T> CompletableFuture<List<T>> readAsync(AsyncDBUtil asyncDBUtil, Query queryRunner, Class<T> clz) {
+        Object[] parameters = parameters(queryRunner);
+        CountingRowProcessor counter = countingRowProcessor(queryRunner);
+        return asyncDBUtil.submit(db -> read(db, queryRunner, parameters, clz, counter)).thenApply(list -> {
+            updateResultCount(counter, list);
+            resultList = list;
+            updateContinuationToken(list);
+            prefetchNext(clz);
+            return list;
+        });
     }
 
-    @Getter
-    @Setter
-    private static class Root {
-        private String alias;
-
-        public Root(String alias) {
-            if (StringUtil.isEmpty(alias))
-                throw new IllegalArgumentException("query is not valid");
-            alias = alias.replaceAll("[\\r|\\t\\n]", " ");
-            final Matcher matcher = pattern.matcher(alias);
-            String[] split = null;
-            if (matcher.find())
-                split = matcher.group(1).split("\\s");
-            else
-                split = alias.split("\\s");
-            this.alias = split[split.length - 1];
-            logger.info(this.alias);
+    /**
+     * @param clz row type, null for maps
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> read(Query queryRunner, Class<T> clz) {
+        Object[] parameters = parameters(queryRunner);
+        PrefetchCache.Page page = prefetchCache == null || dbUtil.isReadingOwnWrites() ? null
+                : prefetchCache.take(new PrefetchCache.Key(queryRunner.getQueryToExecute(), parameters, clz));
+        List<T> list;
+        if (page != null) {
+            list = (List<T>) page.rows();
+            if (page.count() != null)
+                resultCount = page.count();
+        } else {
+            CountingRowProcessor counter = countingRowProcessor(queryRunner);
+            list = read(dbUtil, queryRunner, parameters, clz, counter);
+            updateResultCount(counter, list);
         }
+        resultList = list;
+        updateContinuationToken(list);
+        prefetchNext(clz);
+        return list;
     }
 
-    private Object[] bindParameters(Object[] params, List<Object> paramValues) {
-        if (params != null && CollectionUtil.isNotEmpty(paramValues)) {
-            return ArrayUtil.addAll(params, paramValues.toArray(new Object[0]));
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> read(DBUtil dbUtil, Query queryRunner, Object[] parameters, Class<T> clz,
+                                    CountingRowProcessor counter) {
+        RowProcessor rowProcessor = counter == null ? DBUtil.DEFAULT_ROW_PROCESSOR : counter;
+        String sql = queryRunner.getQueryToExecute();
+        if (clz == null) {
+            DbWork dbWork = new DbWork(sql, parameters, rowProcessor);
+            doWork(dbUtil, queryRunner, dbWork);
+            return (List<T>) dbWork.getResult();
         }
-        if (params != null) {
-            return params;
-        }
-        if (CollectionUtil.isNotEmpty(paramValues))
-            return paramValues.toArray(new Object[0]);
-        return null;
+        DbListWork<T> dbWork = new DbListWork<>(sql, parameters, clz, rowProcessor);
+        doWork(dbUtil, queryRunner, dbWork);
+        return dbWork.getInstance();
     }
 
     /**
-     * params take precedence over query where values
+     * reads the page after the one just served in the background when prefetch is on, not
+     * when the caller may have writes the background read would miss
      */
-    public List<Map<String, Object>> execute(Query queryRunner) {
-        String queryToExecute = queryRunner.getQueryToExecute();
-        List<Object> paramValues = queryRunner.getVals();
-        boolean hasQueryParams = CollectionUtil.isNotEmpty(paramValues)
-                || this.queryParamValues != null;
+    private <T> void prefetchNext(Class<T> clz) {
+        if (prefetcher == null || prefetchCache == null || !isNextExists()
+                || getMaxResults() + 1 > prefetcher.getMaxRows() || dbUtil.isReadingOwnWrites())
+            return;
+        Query next = createNextQuery();
+        Object[] parameters = parameters(next);
+        PrefetchCache.Key key = new PrefetchCache.Key(next.getQueryToExecute(), parameters, clz);
+        if (prefetchCache.contains(key))
+            return;
+        CompletableFuture<PrefetchCache.Page> page = prefetcher.submit(db -> {
+            CountingRowProcessor counter = countingRowProcessor(next);
+            List<T> rows = read(db, next, parameters, clz, counter);
+            return new PrefetchCache.Page(rows, counter == null ? null : counter.getCount());
+        });
+        if (page != null)
+            prefetchCache.put(key, page);
+    }
 
-        if (!hasQueryParams) {
-            List<Map<String, Object>> list = dbUtil.executeQuery(queryToExecute);
-            resultList = list;
-            return list;
+    /**
+     * query of the next page, built the same way the next execute call builds it
+     */
+    private Query createNextQuery() {
+        List<Object> currentValues = values;
+        String currentToken = continuationToken;
+        Integer currentFirstResult = firstResult;
+        try {
+            if (keysetPaging)
+                continuationToken = nextContinuationToken;
+            else
+                firstResult = getNextFirstResult();
+            return createQuery();
+        } finally {
+            values = currentValues;
+            continuationToken = currentToken;
+            firstResult = currentFirstResult;
         }
-        //
-        Object[] parameters = bindParameters(this.queryParamValues, paramValues);
-        List<Map<String, Object>> list = dbUtil.executeQuery(queryToExecute, parameters);
+    }
 
-        resultList = list;
-        return list;
+    /**
+     * rows read through a forward only cursor instead of being loaded into a list, the
+     * stream must be closed (try with resources). result list, count and continuation
+     * token are not updated
+     */
+    public Stream<Map<String, Object>> stream(Query queryRunner) {
+        CountingRowProcessor counter = countingRowProcessor(queryRunner);
+        List<InListTable> inLists = queryRunner.getInLists();
+        return dbUtil.stream(loadInLists(inLists), unloadInLists(inLists),
+                counter == null ? DBUtil.DEFAULT_ROW_PROCESSOR : counter, fetchSize,
+                queryRunner.getQueryToExecute(), parameters(queryRunner));
     }
 
-    public <T> T executeForObject(Class<T> clz, Query queryRunner) {
-        List<Object> paramValues = queryRunner.getVals();
-        boolean hasQueryParams = CollectionUtil.isNotEmpty(paramValues)
-                || this.queryParamValues != null;
-        if (!hasQueryParams)
-            return dbUtil.executeQuery(clz, queryRunner.getQueryToExecute());
-        Object[] parameters = bindParameters(this.queryParamValues, paramValues);
-        return dbUtil.executeQuery(clz, queryRunner.getQueryToExecute(), parameters);
+    public <E> Stream<E> stream(Class<E> clz, Query queryRunner) {
+        CountingRowProcessor counter = countingRowProcessor(queryRunner);
+        List<InListTable> inLists = queryRunner.getInLists();
+        return dbUtil.stream(clz, loadInLists(inLists), unloadInLists(inLists),
+                counter == null ? DBUtil.DEFAULT_ROW_PROCESSOR : counter, fetchSize,
+                queryRunner.getQueryToExecute(), parameters(queryRunner));
     }
 
-    public <E> List<E> executeForList(Class<E> clz, Query queryRunner) {
-        List<Object> paramValues = queryRunner.getVals();
-        boolean hasQueryParams = CollectionUtil.isNotEmpty(paramValues) || this.queryParamValues != null;
-        if (!hasQueryParams) {
-            List<E> queryList = dbUtil.executeQueryList(clz, queryRunner.getQueryToExecute());
-            resultList = queryList;
-            return queryList;
-        }
-        Object[] parameters = bindParameters(this.queryParamValues, paramValues);
-        List<E> queryList = dbUtil.executeQueryList(clz, queryRunner.getQueryToExecute(), parameters);
-        resultList = queryList;
-        return queryList;
+    /**
+     * in lists are loaded on the connection of the cursor before it opens and cleared
+     * there when the stream is closed, temp table rows only exist in that session
+     */
+    private static Work loadInLists(List<InListTable> inLists) {
+        return CollectionUtil.isEmpty(inLists) ? null : InListTable.load(inLists);
+    }
+
+    private static Work unloadInLists(List<InListTable> inLists) {
+        return CollectionUtil.isEmpty(inLists) ? null : InListTable.unload(inLists);
     }
 
     public void addOrderBy(Sort sort) {
@@ -631,6 +509,14 @@ public class QueryController {
     public static class Query implements Serializable {
         private String queryToExecute;
         private List<Object> vals;
+        /**
+         * window count column of the query, null when the count is not read with the page
+         */
+        private String countColumn;
+        /**
+         * in lists loaded into the temp table before the query runs
+         */
+        private transient List<InListTable> inLists;
 
         public Query(String queryToExecute, List<Object> vals) {
             this.queryToExecute = queryToExecute;
@@ -641,7 +527,7 @@ public class QueryController {
     public Integer getFirstResult() {
         if (firstResult != null)
             return firstResult;
-        if (pageNumber != null && getPageCount() != null)
+        if (pageNumber != null && getMaxResults() != null)
             return getPageNumber() * getMaxResults();
         return firstResult;
     }
@@ -650,33 +536,73 @@ public class QueryController {
         if (getMaxResults() == null) {
             return null;
         } else {
-            int rc = getResultCount().intValue();
+            Long count = getResultCount();
+            if (count == null)
+                return null;
+            int rc = count.intValue();
             int mr = getMaxResults();
             int pages = rc / mr;
             return rc % mr == 0 ? pages : pages + 1;
         }
     }
 
+    /**
+     * total count according to {@link #countPolicy}, null when the policy does not count
+     * or the database could not estimate. computed at most once until {@link #refresh()}
+     */
     public Long getResultCount() {
-        Query countQuery = createCountQuery();
         if (isAnyParameterDirty()) {
             refresh();
         }
-        if (resultCount != null)
+        if (resultCount != null || CountPolicy.NONE.equals(countPolicy))
             return resultCount;
-        List<Object> paramValues = countQuery.getVals();
-        boolean hasParam = CollectionUtil.isNotEmpty(paramValues) || this.queryParamValues != null;
-        Long count = null;
-        if (hasParam) {
-            Object[] parameters = bindParameters(this.queryParamValues, paramValues);
-            Number scalar = dbUtil.executeScalar(countQuery.getQueryToExecute(), Number.class, parameters);
-            count = scalar == null ? 0 : scalar.longValue();
-        } else {
-            Number scalar = dbUtil.executeScalar(countQuery.getQueryToExecute(), Number.class).longValue();
-            count = scalar.longValue();
+        Query countQuery = createCountQueryOfPolicy();
+        return setCount(count(dbUtil, countQuery, parameters(countQuery)));
+    }
+
+    /**
+     * {@link #getResultCount()} on a virtual thread of the async db util, the controller
+     * must not be used until the future completes
+     */
+    public CompletableFuture<Long> getResultCountAsync(AsyncDBUtil asyncDBUtil) {
+        if (isAnyParameterDirty()) {
+            refresh();
+        }
+        if (resultCount != null || CountPolicy.NONE.equals(countPolicy))
+            return CompletableFuture.completedFuture(resultCount);
+        Query countQuery = createCountQueryOfPolicy();
+        Object[] parameters = parameters(countQuery);
+        return asyncDBUtil.submit(db -> count(db, countQuery, parameters)).thenApply(this::setCount);
+    }
+
+    private Query createCountQueryOfPolicy() {
+        return switch (countPolicy) {
+            case ESTIMATED -> createCountQuery(QueryShape.Kind.ESTIMATE, QueryShape.Paging.NONE);
+            case CAPPED -> createCountQuery(QueryShape.Kind.COUNT,
+                    new QueryShape.Paging(dbUtil.getDialect(), true, false, null, false));
+            default -> createCountQuery();
+        };
+    }
+
+    /**
+     * count of the count policy as read from the database, not capped yet
+     */
+    private Long count(DBUtil db, Query countQuery, Object[] parameters) {
+        if (CountPolicy.ESTIMATED.equals(countPolicy))
+            return CountEstimator.estimate(db, dbUtil.getDialect(), countQuery.getQueryToExecute(), parameters);
+        DbScalarWork<Number> dbWork = new DbScalarWork<>(countQuery.getQueryToExecute(), parameters);
+        doWork(db, countQuery, dbWork);
+        Number scalar = dbWork.getResult();
+        return scalar == null ? 0 : scalar.longValue();
+    }
+
+    private Long setCount(Long count) {
+        if (CountPolicy.CAPPED.equals(countPolicy) && count != null) {
+            resultCountCapped = count > countCap;
+            count = Math.min(count, countCap);
         }
         resultCount = count;
-        return resultCount;
+        return count;
     }
 
     protected boolean isAnyParameterDirty() {
@@ -731,11 +657,14 @@ public class QueryController {
         this.pageNumber = 0;
         this.whereClauseList = null;
         this.queryAppender = null;
+        this.continuationToken = null;
     }
 
     protected void refresh() {
         resultCount = null;
+        resultCountCapped = false;
         resultList = null;
+        nextContinuationToken = null;
     }
 
     protected void addRestrictions() {
@@ -0,0 +1,49 @@
+package com.m2a.db.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * process wide cache of compiled {@link QueryTemplate}s and rendered sql keyed
+ * by {@link QueryShape}. both maps are bounded, when a map grows past
+ * {@link #MAX_ENTRIES} it is cleared and refilled by the following calls
+ */
+public final class QueryPlanCache {
+
+    public static final int MAX_ENTRIES = 2048;
+
+    private static final Map<List<String>, QueryTemplate> TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<QueryShape, String> PLANS = new ConcurrentHashMap<>();
+
+    private QueryPlanCache() {
+    }
+
+    public static QueryTemplate template(String query, List<String> appenders) {
+        List<String> key = new ArrayList<>(appenders == null ? 1 : appenders.size() + 1);
+        key.add(query);
+        if (appenders != null)
+            key.addAll(appenders);
+        QueryTemplate template = TEMPLATES.get(key);
+        if (template != null)
+            return template;
+        if (TEMPLATES.size() >= MAX_ENTRIES)
+            TEMPLATES.clear();
+        return TEMPLATES.computeIfAbsent(key, k -> new QueryTemplate(query, appenders));
+    }
+
+    public static String sql(QueryShape shape) {
+        String sql = PLANS.get(shape);
+        if (sql != null)
+            return sql;
+        if (PLANS.size() >= MAX_ENTRIES)
+            PLANS.clear();
+        return PLANS.computeIfAbsent(shape, QueryShape::render);
+    }
+
+    public static void clear() {
+        TEMPLATES.clear();
+        PLANS.clear();
+    }
+}
@@ -0,0 +1,92 @@
+package com.m2a.db.query;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * one page read by {@link QuerySpec}, everything that {@link QueryController} keeps
+ * in fields between calls. the count of the count policy is read on the first call asking
+ * for it, with the db util the page was read with, so pages that never show it do not
+ * pay for the count query
+ */
+@Getter
+public final class QueryResult<T> {
+
+    /**
+     * rows of the page, at most max results
+     */
+    private final List<T> rows;
+
+    @Getter(AccessLevel.NONE)
+    private final Supplier<Count> counter;
+
+    @Getter(AccessLevel.NONE)
+    private volatile Count count;
+
+    private final boolean nextExists;
+
+    /**
+     * token of the following page in keyset paging, null on the last page
+     */
+    private final String nextContinuationToken;
+
+    /**
+     * zero based, null in keyset paging
+     */
+    private final Integer pageNumber;
+
+    private final Integer maxResults;
+
+    record Count(Long value, boolean capped) {
+    }
+
+    QueryResult(List<T> rows, Supplier<Count> counter, boolean nextExists,
+                String nextContinuationToken, Integer pageNumber, Integer maxResults) {
+        this.rows = rows;
+        this.counter = counter;
+        this.nextExists = nextExists;
+        this.nextContinuationToken = nextContinuationToken;
+        this.pageNumber = pageNumber;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * null when the count policy does not count or the database could not estimate
+     */
+    public Long getResultCount() {
+        return count().value();
+    }
+
+    public boolean isResultCountCapped() {
+        return count().capped();
+    }
+
+    private Count count() {
+        Count c = count;
+        if (c == null) {
+            synchronized (this) {
+                c = count;
+                if (c == null)
+                    count = c = counter.get();
+            }
+        }
+        return c;
+    }
+
+    public boolean isPreviousExists() {
+        return pageNumber != null && pageNumber > 0 && !rows.isEmpty();
+    }
+
+    public Integer getPageCount() {
+        if (maxResults == null)
+            return null;
+        Long resultCount = getResultCount();
+        if (resultCount == null)
+            return null;
+        long pages = resultCount / maxResults;
+        return (int) (resultCount % maxResults == 0 ? pages : pages + 1);
+    }
+}
@@ -0,0 +1,466 @@
+package com.m2a.db.query;
+
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.query.GroupBy.GroupByProperty;
+import com.m2a.db.query.Sort.Order;
+import com.m2a.enums.Direction;
+import com.m2a.enums.Operator;
+import com.m2a.util.StringUtil;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * everything that decides the sql text of a {@link QueryController} query but
+ * none of the bound values. two controllers producing equal shapes produce the
+ * same sql, so the rendered text is cached in {@link QueryPlanCache}
+ */
+@Getter
+@EqualsAndHashCode
+public final class QueryShape {
+
+    private static final String SPACE = " ";
+
+    /**
+     * column carrying {@code count(*) over()} when the total count is read with the page
+     */
+    public static final String RESULT_COUNT_COLUMN = "qc_result_count";
+
+    public enum Kind {
+        SELECT,
+        COUNT,
+        /**
+         * filtered query without paging, sort or wrapper, used for planner estimates
+         */
+        ESTIMATE
+    }
+
+    private final Kind kind;
+    private final QueryTemplate template;
+    private final List<Clause> where;
+    private final GroupBy groupBy;
+    private final Sort sort;
+    private final String orderColumn;
+    private final String orderDirection;
+    private final String sortExpression;
+    private final Paging paging;
+
+    public QueryShape(Kind kind, QueryTemplate template, List<Clause> where, GroupBy groupBy, Sort sort,
+                      String orderColumn, String orderDirection, String sortExpression, Paging paging) {
+        this.kind = kind;
+        this.template = template;
+        this.where = where;
+        this.groupBy = groupBy;
+        this.sort = sort;
+        this.orderColumn = orderColumn;
+        this.orderDirection = orderDirection;
+        this.sortExpression = sortExpression;
+        this.paging = paging;
+    }
+
+    /**
+     * @param paging {@link Paging#NONE} for exact count, limited paging for a capped count
+     */
+    public static QueryShape count(QueryTemplate template, List<Clause> where, GroupBy groupBy, Paging paging) {
+        return new QueryShape(Kind.COUNT, template, where, groupBy, null,
+                null, null, null, paging);
+    }
+
+    public static QueryShape estimate(QueryTemplate template, List<Clause> where) {
+        return new QueryShape(Kind.ESTIMATE, template, where, null, null,
+                null, null, null, Paging.NONE);
+    }
+
+    /**
+     * keyset values in the same order as the placeholders rendered by {@link #render()},
+     * must be bound after the where values and before {@link #bindPaging}
+     */
+    public void bindKeyset(List<Object> values, Object[] lastValues) {
+        if (kind != Kind.SELECT || paging.getKeysetNulls() == null)
+            return;
+        if (isRowValueSeek()) {
+            Collections.addAll(values, lastValues);
+            return;
+        }
+        List<Order> orders = keysetOrders();
+        for (int i = 0; i < orders.size(); i++) {
+            if (lastValues[i] == null && !nullsFirst(orders.get(i).getDirection()))
+                continue; // nothing sorts after a trailing null
+            for (int j = 0; j < i; j++) {
+                if (lastValues[j] != null)
+                    values.add(lastValues[j]);
+            }
+            if (lastValues[i] != null)
+                values.add(lastValues[i]);
+        }
+    }
+
+    /**
+     * paging values in the same order as the placeholders rendered by {@link #render()},
+     * max results of a capped count is its cap
+     */
+    public void bindPaging(List<Object> values, Integer maxResults, Integer firstResult) {
+        if (kind == Kind.ESTIMATE)
+            return;
+        if (kind == Kind.COUNT) {
+            if (paging.isLimited())
+                paging.getDialect().bindPaging(values, maxResults + 1, null);
+            return;
+        }
+        paging.getDialect().bindPaging(values, paging.isLimited() ? maxResults + 1 : null,
+                paging.isOffset() ? firstResult : null);
+    }
+
+    String render() {
+        String alias = template.getRootAlias();
+        StringBuilder sb = new StringBuilder(template.getSql().length() + 128);
+        if (kind == Kind.ESTIMATE) {
+            renderTemplate(sb, false);
+            return sb.toString();
+        }
+        if (kind == Kind.COUNT) {
+            sb.append("select count(*) from ( ");
+            renderTemplate(sb, false);
+            if (paging.isLimited())
+                paging.getDialect().appendPaging(sb, true, false);
+            sb.append(" ) ").append(alias);
+            if (groupBy != null)
+                renderGroupBy(sb, false);
+            return sb.toString();
+        }
+        if (paging.isWindowCount())
+            sb.append("select ").append(alias).append(".*, count(*) over() ").append(RESULT_COUNT_COLUMN).append(" from ( ");
+        else
+            sb.append("select * from ( ");
+        renderTemplate(sb, groupBy != null);
+        sb.append(" ) ").append(alias);
+        if (paging.getKeysetNulls() != null)
+            renderKeyset(sb);
+        renderOrderBy(sb);
+        if (paging.isLimited() || paging.isOffset())
+            paging.getDialect().appendPaging(sb, paging.isLimited(), paging.isOffset());
+        return sb.toString();
+    }
+
+    /**
+     * seek predicate on the sort columns. plain {@link Direction#ASC} / {@link Direction#DESC}
+     * columns are expected to be not null, nullable columns have to be sorted with one of the
+     * nulls first / nulls last directions so their position is the same on every database
+     */
+    private void renderKeyset(StringBuilder sb) {
+        List<Order> orders = keysetOrders();
+        BitSet nulls = paging.getKeysetNulls();
+        sb.append(" WHERE ");
+        if (isRowValueSeek()) {
+            sb.append("(");
+            for (int i = 0; i < orders.size(); i++) {
+                if (i > 0)
+                    sb.append(", ");
+                appendColumn(sb, orders.get(i).getProperty());
+            }
+            sb.append(descending(orders.getFirst().getDirection()) ? ") < (" : ") > (");
+            for (int i = 0; i < orders.size(); i++)
+                sb.append(i > 0 ? ", ?" : "?");
+            sb.append(")");
+            return;
+        }
+        int branches = 0;
+        sb.append("(");
+        for (int i = 0; i < orders.size(); i++) {
+            Direction direction = orders.get(i).getDirection();
+            if (nulls.get(i) && !nullsFirst(direction))
+                continue; // nothing sorts after a trailing null
+            sb.append(branches > 0 ? " OR (" : "(");
+            for (int j = 0; j < i; j++) {
+                appendColumn(sb, orders.get(j).getProperty());
+                sb.append(nulls.get(j) ? " IS NULL AND " : " = ? AND ");
+            }
+            String column = orders.get(i).getProperty();
+            if (nulls.get(i)) {
+                appendColumn(sb, column);
+                sb.append(" IS NOT NULL");
+            } else if (nullsAware(direction) && !nullsFirst(direction)) {
+                sb.append("(");
+                appendColumn(sb, column);
+                sb.append(descending(direction) ? " < ?" : " > ?").append(" OR ");
+                appendColumn(sb, column);
+                sb.append(" IS NULL)");
+            } else {
+                appendColumn(sb, column);
+                sb.append(descending(direction) ? " < ?" : " > ?");
+            }
+            sb.append(")");
+            branches++;
+        }
+        if (branches == 0)
+            sb.append("1 = 0");
+        sb.append(")");
+    }
+
+    private boolean isRowValueSeek() {
+        List<Order> orders = keysetOrders();
+        if (orders.size() < 2 || !paging.getDialect().supportsRowValueComparison())
+            return false;
+        Direction first = orders.getFirst().getDirection();
+        for (Order order : orders) {
+            if (order.getDirection() != first || nullsAware(order.getDirection()))
+                return false;
+        }
+        return true;
+    }
+
+    private List<Order> keysetOrders() {
+        List<Order> orders = new ArrayList<>();
+        for (Order order : sort)
+            orders.add(order);
+        return orders;
+    }
+
+    static boolean descending(Direction direction) {
+        return Direction.DESC.equals(direction) || Direction.DESC_NULLS_FIRST.equals(direction)
+                || Direction.DESC_NULLS_LAST.equals(direction);
+    }
+
+    static boolean nullsAware(Direction direction) {
+        return Direction.NULLS_FIRST.equals(direction) || Direction.NULLS_LAST.equals(direction)
+                || Direction.DESC_NULLS_FIRST.equals(direction) || Direction.DESC_NULLS_LAST.equals(direction);
+    }
+
+    static boolean nullsFirst(Direction direction) {
+        return Direction.NULLS_FIRST.equals(direction) || Direction.DESC_NULLS_FIRST.equals(direction);
+    }
+
+    /**
+     * template with the where clauses and group by properties inserted at the positions
+     * found by {@link SqlSkeleton}, before any group by / order by of the template itself
+     */
+    private void renderTemplate(StringBuilder sb, boolean withGroupBy) {
+        String sql = template.getSql();
+        int whereInsert = template.getWhereInsert();
+        int groupByInsert = template.getGroupByInsert();
+        sb.append(sql, 0, whereInsert);
+        renderWhere(sb);
+        sb.append(sql, whereInsert, groupByInsert);
+        if (withGroupBy) {
+            renderGroupBy(sb, template.isGroupByPresent());
+            sb.append(SPACE);
+        }
+        sb.append(sql, groupByInsert, sql.length());
+    }
+
+    private void renderWhere(StringBuilder sb) {
+        sb.append(SPACE);
+        int clauseCount = 0;
+        for (Clause clause : where) {
+            if (clauseCount == 0)
+                sb.append(template.isWherePresent() ? " AND " : " WHERE ");
+            else
+                sb.append(SPACE).append(clause.getLogicalOperandClause().name()).append(SPACE);
+            boolean group = Operator.GROUP.equals(clause.getGroupOperand());
+            if (group)
+                sb.append(" ( ");
+            int paramCount = 0;
+            for (Param param : clause.getParams()) {
+                if (paramCount > 0)
+                    sb.append(SPACE).append(clause.getLogicalOperand().name()).append(SPACE);
+                param.render(sb);
+                paramCount++;
+            }
+            if (group)
+                sb.append(" ) ");
+            clauseCount++;
+        }
+        sb.append(SPACE);
+    }
+
+    private void renderGroupBy(StringBuilder sb, boolean present) {
+        sb.append(present ? ", " : " Group By ");
+        int i = 0;
+        for (GroupByProperty prop : groupBy) {
+            if (i > 0)
+                sb.append(", ");
+            appendColumn(sb, prop.getPropertyName());
+            i++;
+        }
+    }
+
+    /**
+     * <p>
+     * sort first priority is based on order column from query parameter second.
+     * it's based on cookie third. it's based on default sort api
+     * </p>
+     */
+    private void renderOrderBy(StringBuilder sb) {
+        if (sort != null || StringUtil.isNotEmpty(orderColumn) || StringUtil.isNotEmpty(sortExpression))
+            sb.append(" Order By ");
+        if (StringUtil.isNotEmpty(orderColumn)) {
+            // first priority
+            sb.append(orderColumn).append(SPACE).append(orderDirection == null ? "desc" : orderDirection);
+        } else if (StringUtil.isNotEmpty(sortExpression)) {
+            sb.append(SPACE).append(sortExpression);
+        } else if (sort != null) {
+            int i = 0;
+            for (Order order : sort) {
+                if (i > 0)
+                    sb.append(", ");
+                Direction direction = order.getDirection();
+                if (Direction.QUERY.equals(direction)) {
+                    // put all query in order by
+                    sb.append(SPACE).append(order.getProperty());
+                } else {
+                    appendColumn(sb, order.getProperty());
+                    sb.append(SPACE).append(direction.getLabel());
+                }
+                i++;
+            }
+        }
+    }
+
+    private void appendColumn(StringBuilder sb, String property) {
+        if (property.contains("."))
+            sb.append(property);
+        else
+            sb.append(template.getRootAlias()).append(".").append(property);
+    }
+
+    /**
+     * paging part of the shape, keyset nulls is null unless the query seeks
+     * past a continuation token, then bit i tells whether sort value i is null
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Paging {
+        public static final Paging NONE = new Paging(null, false, false, null, false);
+
+        private final SqlDialect dialect;
+        private final boolean limited;
+        private final boolean offset;
+        private final BitSet keysetNulls;
+        private final boolean windowCount;
+
+        public Paging(SqlDialect dialect, boolean limited, boolean offset, BitSet keysetNulls, boolean windowCount) {
+            this.dialect = dialect;
+            this.limited = limited;
+            this.offset = offset;
+            this.keysetNulls = keysetNulls;
+            this.windowCount = windowCount;
+        }
+    }
+
+    /**
+     * a where clause with at least one non-empty query param
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Clause {
+        private final Operator logicalOperand;
+        private final Operator logicalOperandClause;
+        private final Operator groupOperand;
+        private final List<Param> params;
+
+        public Clause(Operator logicalOperand, Operator logicalOperandClause, Operator groupOperand, List<Param> params) {
+            this.logicalOperand = logicalOperand;
+            this.logicalOperandClause = logicalOperandClause;
+            this.groupOperand = groupOperand;
+            this.params = params;
+        }
+    }
+
+    /**
+     * how the values of an in / not in param reach the database
+     */
+    public enum InBinding {
+        /**
+         * raw sql text given as string value, part of the sql
+         */
+        INLINE,
+        /**
+         * one placeholder per value, padded to a power of two bucket
+         */
+        PLACEHOLDERS,
+        /**
+         * single array parameter compared with any / all
+         */
+        ARRAY,
+        /**
+         * values loaded into the session temp table {@link InListTable#TABLE}
+         */
+        TEMP_TABLE
+    }
+
+    /**
+     * a rendered column expression and its operator. in values are only part of
+     * the text when given as raw sql, otherwise just their binding and bucket size
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Param {
+        private final String columnExpression;
+        private final Operator operator;
+        private final String inValues;
+        private final InBinding inBinding;
+        private final int inSize;
+        private final String inColumn;
+
+        public Param(String columnExpression, Operator operator) {
+            this(columnExpression, operator, null, null, 0, null);
+        }
+
+        public Param(String columnExpression, Operator operator, String inValues, InBinding inBinding,
+                     int inSize, String inColumn) {
+            this.columnExpression = columnExpression;
+            this.operator = operator;
+            this.inValues = inValues;
+            this.inBinding = inBinding;
+            this.inSize = inSize;
+            this.inColumn = inColumn;
+        }
+
+        void render(StringBuilder sb) {
+            if ((Operator.IN.equals(operator) || Operator.NOT_IN.equals(operator))
+                    && inBinding != InBinding.INLINE && inSize == 0) {
+                // empty list, nothing is in it and everything is not in it
+                sb.append(Operator.IN.equals(operator) ? " 1 = 0 " : " 1 = 1 ");
+                return;
+            }
+            sb.append(columnExpression);
+            if (operator == null)
+                return;
+            switch (operator) {
+                case EQUAL -> sb.append(" = ?");
+                case NOT_EQUAL -> sb.append(" <> ?");
+                case GT -> sb.append(" > ?");
+                case GTE -> sb.append(" >= ?");
+                case LT -> sb.append(" < ?");
+                case LTE -> sb.append(" <= ?");
+                case LIKE, BEGIN_WITH, END_WITH -> sb.append(" LIKE ? ");
+                case IS_NULL -> sb.append(" is null ");
+                case NOT_NULL -> sb.append(" is not null ");
+                case IN, NOT_IN -> renderIn(sb, Operator.IN.equals(operator));
+                default -> {
+                    // query operator carries its own placeholders
+                }
+            }
+        }
+
+        private void renderIn(StringBuilder sb, boolean in) {
+            switch (inBinding) {
+                case ARRAY -> sb.append(in ? " = ANY(?) " : " <> ALL(?) ");
+                case TEMP_TABLE -> sb.append(in ? " IN( " : " NOT IN( ")
+                        .append("select ").append(inColumn).append(" from ").append(InListTable.TABLE)
+                        .append(" where list_id = ? ) ");
+                case PLACEHOLDERS -> {
+                    sb.append(in ? " IN( " : " NOT IN( ");
+                    for (int i = 0; i < inSize; i++)
+                        sb.append(i > 0 ? ", ?" : "?");
+                    sb.append(" ) ");
+                }
+                default -> sb.append(in ? " IN( " : " NOT IN( ").append(inValues).append(" ) ");
+            }
+        }
+    }
+}
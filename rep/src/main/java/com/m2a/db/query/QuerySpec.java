@@ -0,0 +1,360 @@
+package com.m2a.db.query;
+
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.query.QueryResult.Count;
+import com.m2a.db.query.WhereClause.QueryParam;
+import com.m2a.db.worker.CountingRowProcessor;
+import com.m2a.db.worker.DBUtil;
+import com.m2a.db.worker.DbListWork;
+import com.m2a.db.worker.DbScalarWork;
+import com.m2a.db.worker.DbWork;
+import com.m2a.enums.CountPolicy;
+import com.m2a.util.ArrayUtil;
+import com.m2a.util.CollectionUtil;
+import com.m2a.util.StringUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.apache.commons.dbutils.RowProcessor;
+import org.hibernate.jdbc.Work;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * immutable counterpart of {@link QueryController}. a spec holds the query, where clauses,
+ * sort, group by and paging settings and can be kept in a static field and executed from
+ * many threads at once, every execution returns its page and count in a {@link QueryResult},
+ * the count query only runs when the result is asked for the count.
+ * <p>
+ * <blockquote>
+ *
+ * <pre>
+ *         static final QuerySpec USERS = QuerySpec.builder("select * from users u")
+ *                 .where(activeClause).sort(new Sort("name")).maxResults(20).build();
+ *
+ *         QueryResult&lt;Map&lt;String, Object&gt;&gt; page = USERS.execute(dbUtil, pageNumber);
+ *         </pre>
+ *
+ * </blockquote>
+ * <p>
+ * where values are copied when the spec is built, values that change per request are
+ * {@code ?} placeholders of the query given to the execute methods, or a spec derived
+ * through {@link #toBuilder()}
+ */
+@Getter
+public final class QuerySpec {
+
+    private final String query;
+    private final List<String> queryAppender;
+    private final QueryTemplate template;
+    @Getter(AccessLevel.NONE)
+    private final List<WhereClause> whereClauseList;
+    private final Sort sort;
+    private final GroupBy groupBy;
+    private final String orderColumn;
+    private final String orderDirection;
+    private final String sortExpression;
+    private final Integer maxResults;
+    private final boolean keysetPaging;
+    private final boolean windowCount;
+    private final CountPolicy countPolicy;
+    private final int countCap;
+    private final int inListThreshold;
+
+    private QuerySpec(Builder builder) {
+        if (StringUtil.isEmpty(builder.query))
+            throw new IllegalArgumentException("You have to provide query");
+        if (builder.keysetPaging) {
+            // fail on build instead of on the first execution
+            KeysetToken.lastValues(builder.sort, null, StringUtil.isNotEmpty(builder.orderColumn)
+                    || StringUtil.isNotEmpty(builder.sortExpression));
+            if (builder.maxResults == null)
+                throw new IllegalStateException("keyset paging needs max results");
+        }
+        this.query = builder.query;
+        this.queryAppender = Collections.unmodifiableList(new ArrayList<>(builder.queryAppender));
+        this.template = QueryPlanCache.template(query, queryAppender);
+        this.whereClauseList = Collections.unmodifiableList(new ArrayList<>(builder.whereClauseList));
+        this.sort = builder.sort;
+        this.groupBy = builder.groupBy;
+        this.orderColumn = builder.orderColumn;
+        this.orderDirection = builder.orderDirection;
+        this.sortExpression = builder.sortExpression;
+        this.maxResults = builder.maxResults;
+        this.keysetPaging = builder.keysetPaging;
+        this.windowCount = builder.windowCount;
+        this.countPolicy = builder.countPolicy;
+        this.countCap = builder.countCap;
+        this.inListThreshold = builder.inListThreshold;
+    }
+
+    public static Builder builder(String query) {
+        return new Builder(query);
+    }
+
+    /**
+     * builder initialized with this spec, for a spec that differs in a few settings
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder(query);
+        builder.queryAppender.addAll(queryAppender);
+        builder.whereClauseList.addAll(whereClauseList);
+        builder.sort = sort;
+        builder.groupBy = groupBy;
+        builder.orderColumn = orderColumn;
+        builder.orderDirection = orderDirection;
+        builder.sortExpression = sortExpression;
+        builder.maxResults = maxResults;
+        builder.keysetPaging = keysetPaging;
+        builder.windowCount = windowCount;
+        builder.countPolicy = countPolicy;
+        builder.countCap = countCap;
+        builder.inListThreshold = inListThreshold;
+        return builder;
+    }
+
+    /**
+     * @param pageNumber zero based
+     * @param params     values of the {@code ?} placeholders of the query, bound before where values
+     */
+    public QueryResult<Map<String, Object>> execute(DBUtil dbUtil, int pageNumber, Object... params) {
+        return execute(dbUtil, pageNumber, null, params, DbWork::new);
+    }
+
+    /**
+     * keyset paging, the token is the next continuation token of the previous page or null for the first one
+     */
+    public QueryResult<Map<String, Object>> executeAfter(DBUtil dbUtil, String continuationToken, Object... params) {
+        return execute(dbUtil, null, continuationToken, params, DbWork::new);
+    }
+
+    public <E> QueryResult<E> executeForList(Class<E> clz, DBUtil dbUtil, int pageNumber, Object... params) {
+        return execute(dbUtil, pageNumber, null, params,
+                (sql, values, rowProcessor) -> new DbListWork<>(sql, values, clz, rowProcessor));
+    }
+
+    public <E> QueryResult<E> executeForListAfter(Class<E> clz, DBUtil dbUtil, String continuationToken,
+                                                  Object... params) {
+        return execute(dbUtil, null, continuationToken, params,
+                (sql, values, rowProcessor) -> new DbListWork<>(sql, values, clz, rowProcessor));
+    }
+
+    /**
+     * total count according to the count policy, null when the policy does not count
+     */
+    public Long count(DBUtil dbUtil, Object... params) {
+        return count(dbUtil, params, null).value();
+    }
+
+    /**
+     * work reading rows with the given row processor
+     */
+    private interface ListWork<T> {
+        Work create(String sql, Object[] params, RowProcessor rowProcessor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> QueryResult<T> execute(DBUtil dbUtil, Integer pageNumber, String continuationToken,
+                                       Object[] params, ListWork<?> listWork) {
+        if (keysetPaging == (pageNumber != null))
+            throw new IllegalStateException(keysetPaging ? "keyset paging spec is executed with a continuation token"
+                    : "continuation token needs a keyset paging spec");
+        SqlDialect dialect = dbUtil.getDialect();
+        Integer firstResult = pageNumber != null && maxResults != null ? pageNumber * maxResults : null;
+        List<Object> values = new ArrayList<>();
+        List<InListTable> inLists = new ArrayList<>();
+        List<QueryShape.Clause> where = WhereClauseBinder.bind(whereClauseList, template.getRootAlias(), dialect,
+                inListThreshold, values, inLists);
+        Object[] lastValues = keysetPaging ? KeysetToken.lastValues(sort, continuationToken, false) : null;
+        boolean countOver = windowCount && !keysetPaging && CountPolicy.EXACT.equals(countPolicy);
+        QueryShape.Paging paging = new QueryShape.Paging(dialect, maxResults != null,
+                firstResult != null && firstResult > 0, KeysetToken.nulls(lastValues), countOver);
+        QueryShape shape = new QueryShape(QueryShape.Kind.SELECT, template, where, groupBy, sort,
+                orderColumn, orderDirection, sortExpression, paging);
+        String sql = QueryPlanCache.sql(shape);
+        shape.bindKeyset(values, lastValues);
+        shape.bindPaging(values, maxResults, firstResult);
+
+        CountingRowProcessor counter = countOver ? new CountingRowProcessor(QueryShape.RESULT_COUNT_COLUMN) : null;
+        Work work = listWork.create(sql, parameters(params, values),
+                counter == null ? DBUtil.DEFAULT_ROW_PROCESSOR : counter);
+        doWork(dbUtil, sql, inLists, work);
+        List<T> list = (List<T>) (work instanceof DbWork dbWork ? dbWork.getResult()
+                : ((DbListWork<?>) work).getInstance());
+
+        boolean nextExists = maxResults != null && list.size() > maxResults;
+        List<T> rows = nextExists ? new ArrayList<>(list.subList(0, maxResults)) : list;
+        String nextToken = keysetPaging && nextExists ? KeysetToken.next(sort, rows.getLast()) : null;
+        Count count = null;
+        if (counter != null && counter.getCount() != null)
+            count = new Count(counter.getCount(), false);
+        else if (counter != null && list.isEmpty() && (firstResult == null || firstResult == 0))
+            count = new Count(0L, false);
+        else if (CountPolicy.NONE.equals(countPolicy))
+            count = new Count(null, false);
+        Count read = count;
+        return new QueryResult<>(rows, read != null ? () -> read : () -> count(dbUtil, params, dialect),
+                nextExists, nextToken, pageNumber, maxResults);
+    }
+
+    private Count count(DBUtil dbUtil, Object[] params, SqlDialect dialect) {
+        if (CountPolicy.NONE.equals(countPolicy))
+            return new Count(null, false);
+        if (dialect == null)
+            dialect = dbUtil.getDialect();
+        List<Object> values = new ArrayList<>();
+        List<InListTable> inLists = new ArrayList<>();
+        List<QueryShape.Clause> where = WhereClauseBinder.bind(whereClauseList, template.getRootAlias(), dialect,
+                inListThreshold, values, inLists);
+        if (CountPolicy.ESTIMATED.equals(countPolicy)) {
+            String sql = QueryPlanCache.sql(QueryShape.estimate(template, where));
+            return new Count(CountEstimator.estimate(dbUtil, dialect, sql, parameters(params, values)), false);
+        }
+        boolean capped = CountPolicy.CAPPED.equals(countPolicy);
+        QueryShape shape = QueryShape.count(template, where, groupBy,
+                capped ? new QueryShape.Paging(dialect, true, false, null, false) : QueryShape.Paging.NONE);
+        String sql = QueryPlanCache.sql(shape);
+        shape.bindPaging(values, countCap, null);
+        DbScalarWork<Number> work = new DbScalarWork<>(sql, parameters(params, values));
+        doWork(dbUtil, sql, inLists, work);
+        long count = work.getResult() == null ? 0 : work.getResult().longValue();
+        if (capped)
+            return new Count(Math.min(count, countCap), count > countCap);
+        return new Count(count, false);
+    }
+
+    private static Object[] parameters(Object[] params, List<Object> values) {
+        if (params == null || params.length == 0)
+            return values.toArray();
+        if (values.isEmpty())
+            return params;
+        return ArrayUtil.addAll(params, values.toArray());
+    }
+
+    /**
+     * reads on a replica when the db util has them, queries with in list tables on the
+     * primary where the tables are loaded, as {@link QueryController} does
+     */
+    private static void doWork(DBUtil dbUtil, String sql, List<InListTable> inLists, Work work) {
+        if (inLists.isEmpty())
+            dbUtil.doReadWork(work);
+        else
+            dbUtil.doWork(InListTable.around(inLists, work));
+        dbUtil.logger(sql);
+    }
+
+    /**
+     * not thread safe, build the spec once and share the spec
+     */
+    public static final class Builder {
+
+        private final String query;
+        private final List<String> queryAppender = new ArrayList<>();
+        private final List<WhereClause> whereClauseList = new ArrayList<>();
+        private Sort sort;
+        private GroupBy groupBy;
+        private String orderColumn;
+        private String orderDirection;
+        private String sortExpression;
+        private Integer maxResults;
+        private boolean keysetPaging;
+        private boolean windowCount;
+        private CountPolicy countPolicy = CountPolicy.EXACT;
+        private int countCap = QueryController.DEFAULT_COUNT_CAP;
+        private int inListThreshold = WhereClauseBinder.DEFAULT_IN_LIST_THRESHOLD;
+
+        private Builder(String query) {
+            this.query = query;
+        }
+
+        public Builder appendQuery(String joinQuery) {
+            queryAppender.add(joinQuery);
+            return this;
+        }
+
+        /**
+         * the clause is copied, changing it afterwards does not change the spec
+         */
+        public Builder where(WhereClause whereClause) {
+            if (whereClause != null && CollectionUtil.isNotEmpty(whereClause.params))
+                whereClauseList.add(copy(whereClause));
+            return this;
+        }
+
+        public Builder sort(Sort sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        public Builder groupBy(GroupBy groupBy) {
+            this.groupBy = groupBy;
+            return this;
+        }
+
+        public Builder orderColumn(String orderColumn, String orderDirection) {
+            this.orderColumn = orderColumn;
+            this.orderDirection = orderDirection;
+            return this;
+        }
+
+        public Builder sortExpression(String sortExpression) {
+            this.sortExpression = sortExpression;
+            return this;
+        }
+
+        public Builder maxResults(Integer maxResults) {
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        public Builder keysetPaging(boolean keysetPaging) {
+            this.keysetPaging = keysetPaging;
+            return this;
+        }
+
+        public Builder windowCount(boolean windowCount) {
+            this.windowCount = windowCount;
+            return this;
+        }
+
+        public Builder countPolicy(CountPolicy countPolicy) {
+            if (countPolicy == null)
+                throw new IllegalArgumentException("count policy can not be null");
+            this.countPolicy = countPolicy;
+            return this;
+        }
+
+        public Builder countCap(int countCap) {
+            this.countCap = countCap;
+            return this;
+        }
+
+        public Builder inListThreshold(int inListThreshold) {
+            this.inListThreshold = inListThreshold;
+            return this;
+        }
+
+        public QuerySpec build() {
+            return new QuerySpec(this);
+        }
+
+        private static WhereClause copy(WhereClause whereClause) {
+            List<QueryParam> params = new ArrayList<>(whereClause.params.size());
+            for (QueryParam qp : whereClause) {
+                QueryParam copy = new QueryParam();
+                copy.setColumnExpression(qp.getColumnExpression());
+                copy.setOperator(qp.getOperator());
+                copy.setObject(qp.getObject());
+                copy.setFunction(qp.getFunction());
+                params.add(copy);
+            }
+            WhereClause copy = new WhereClause(Collections.unmodifiableList(params));
+            copy.setLogicalOperand(whereClause.getLogicalOperand());
+            copy.setLogicalOperandClause(whereClause.getLogicalOperandClause());
+            copy.setGroupOperand(whereClause.getGroupOperand());
+            return copy;
+        }
+    }
+}
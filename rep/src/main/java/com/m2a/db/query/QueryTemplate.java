@@ -0,0 +1,72 @@
+package com.m2a.db.query;
+
+import com.m2a.util.CollectionUtil;
+import com.m2a.util.StringUtil;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * normalized native query (base query plus appended joins) with everything
+ * {@link QueryController} used to re-parse on each call: root alias, the
+ * presence of where / group by clauses and where to insert them, found once by
+ * {@link SqlSkeleton}. instances are immutable and shared through {@link QueryPlanCache}
+ */
+@Getter
+public final class QueryTemplate {
+
+    private final String sql;
+
+    private final String rootAlias;
+
+    private final boolean wherePresent;
+
+    private final boolean groupByPresent;
+
+    /**
+     * offset in {@link #sql} where where clauses go, see {@link SqlSkeleton#getWhereInsert()}
+     */
+    private final int whereInsert;
+
+    /**
+     * offset in {@link #sql} where group by properties go, see {@link SqlSkeleton#getGroupByInsert()}
+     */
+    private final int groupByInsert;
+
+    QueryTemplate(String query, List<String> appenders) {
+        if (StringUtil.isEmpty(query))
+            throw new IllegalArgumentException("query is not valid");
+        String normalized = SqlSkeleton.normalize(query);
+        StringBuilder sb = new StringBuilder(normalized);
+        if (CollectionUtil.isNotEmpty(appenders)) {
+            for (String appender : appenders)
+                sb.append(appender);
+        }
+        this.sql = sb.toString();
+        SqlSkeleton skeleton = SqlSkeleton.parse(sql);
+        this.rootAlias = skeleton.getRootAlias() != null ? skeleton.getRootAlias() : lastWord(normalized);
+        this.wherePresent = skeleton.isWherePresent();
+        this.groupByPresent = skeleton.isGroupByPresent();
+        this.whereInsert = skeleton.getWhereInsert();
+        this.groupByInsert = skeleton.getGroupByInsert();
+    }
+
+    private static String lastWord(String query) {
+        String[] split = query.trim().split("\\s+");
+        return split[split.length - 1];
+    }
+
+    @Override
+    public int hashCode() {
+        return sql.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        return sql.equals(((QueryTemplate) obj).sql);
+    }
+}
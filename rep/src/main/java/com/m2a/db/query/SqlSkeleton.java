@@ -0,0 +1,241 @@
+package com.m2a.db.query;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * top level structure of a native query found in a single pass. string literals, quoted
+ * identifiers, comments and everything inside parentheses (sub queries, function calls)
+ * are skipped, so a {@code where} in a sub query or a literal is never taken for the
+ * clause of the outer query. positions are offsets of the first keyword character, -1
+ * when the clause is absent
+ */
+@Getter
+public final class SqlSkeleton {
+
+    /**
+     * keywords ending the from / where part of a select
+     */
+    private static final Set<String> WHERE_END =
+            Set.of("group", "having", "order", "limit", "offset", "fetch", "union", "intersect", "except",
+                    "minus", "window", "for");
+    /**
+     * keywords ending the group by list
+     */
+    private static final Set<String> GROUP_BY_END =
+            Set.of("having", "order", "limit", "offset", "fetch", "union", "intersect", "except",
+                    "minus", "window", "for");
+    private static final Set<String> RESERVED_WORDS =
+            Set.of("where", "group", "order", "join", "left", "right", "inner", "outer", "cross", "full",
+                    "natural", "union", "limit", "on", "having");
+
+    /**
+     * parenthesized group at top level, its content is not tokenized
+     */
+    private static final String GROUP = "(";
+
+    private final int fromPosition;
+    private final int wherePosition;
+    private final int groupByPosition;
+    private final int havingPosition;
+    private final int orderByPosition;
+    /**
+     * where the where clauses of the query are inserted, before group by, order by and the like
+     */
+    private final int whereInsert;
+    /**
+     * end of the group by list, equal to {@link #whereInsert} without group by
+     */
+    private final int groupByInsert;
+    /**
+     * first table after the top level from, null for a derived table
+     */
+    private final String rootTable;
+    /**
+     * alias of the first table after the top level from, the table name without alias
+     */
+    private final String rootAlias;
+
+    private record Token(String word, int start, int end) {
+    }
+
+    private SqlSkeleton(String sql, List<Token> tokens) {
+        int from = -1;
+        int where = -1;
+        int groupBy = -1;
+        int having = -1;
+        int orderBy = -1;
+        int whereEnd = -1;
+        int groupByEnd = -1;
+        int fromIndex = -1;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            String word = token.word();
+            boolean by = i + 1 < tokens.size() && "by".equals(tokens.get(i + 1).word());
+            if (from == -1) {
+                if ("from".equals(word)) {
+                    from = token.start();
+                    fromIndex = i;
+                }
+                continue;
+            }
+            if (where == -1 && whereEnd == -1 && "where".equals(word))
+                where = token.start();
+            else if (groupBy == -1 && "group".equals(word) && by)
+                groupBy = token.start();
+            else if (having == -1 && "having".equals(word))
+                having = token.start();
+            else if (orderBy == -1 && "order".equals(word) && by)
+                orderBy = token.start();
+            // group and order are only clauses when followed by by
+            boolean clause = by || !("group".equals(word) || "order".equals(word));
+            if (whereEnd == -1 && clause && WHERE_END.contains(word))
+                whereEnd = token.start();
+            if (groupBy != -1 && groupByEnd == -1 && clause && GROUP_BY_END.contains(word))
+                groupByEnd = token.start();
+        }
+        this.fromPosition = from;
+        this.wherePosition = where;
+        this.groupByPosition = groupBy;
+        this.havingPosition = having;
+        this.orderByPosition = orderBy;
+        this.whereInsert = whereEnd == -1 ? sql.length() : whereEnd;
+        this.groupByInsert = groupBy == -1 ? whereInsert : groupByEnd == -1 ? sql.length() : groupByEnd;
+
+        String table = null;
+        String alias = null;
+        if (fromIndex != -1 && fromIndex + 1 < tokens.size()) {
+            int i = fromIndex + 1;
+            if (!GROUP.equals(tokens.get(i).word()))
+                table = original(sql, tokens.get(i));
+            i++;
+            if (i < tokens.size() && "as".equals(tokens.get(i).word()))
+                i++;
+            if (i < tokens.size()) {
+                String next = tokens.get(i).word();
+                if (!GROUP.equals(next) && !RESERVED_WORDS.contains(next))
+                    alias = original(sql, tokens.get(i));
+            }
+        }
+        this.rootTable = table;
+        this.rootAlias = alias != null ? alias : table;
+    }
+
+    private static String original(String sql, Token token) {
+        return sql.substring(token.start(), token.end());
+    }
+
+    public boolean isWherePresent() {
+        return wherePosition != -1;
+    }
+
+    public boolean isGroupByPresent() {
+        return groupByPosition != -1;
+    }
+
+    public static SqlSkeleton parse(String sql) {
+        return new SqlSkeleton(sql, tokenize(sql));
+    }
+
+    /**
+     * query on one line: line breaks and tabs outside literals become spaces and line
+     * comments are dropped, they would otherwise comment out everything appended later
+     */
+    public static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = skipQuoted(sql, i, c);
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end == -1 ? length : end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end == -1 ? length : end + 2;
+                sb.append(sql, i, end);
+                i = end;
+            } else {
+                sb.append(c == '\r' || c == '\n' || c == '\t' ? ' ' : c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * top level words in lower case, each top level parenthesized group as one {@link #GROUP} token
+     */
+    private static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int length = sql.length();
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '"' || c == '`') {
+                // quoted identifier, kept as a word so it can be the root table or alias
+                int start = i;
+                i = skipQuoted(sql, i, c);
+                if (depth == 0)
+                    tokens.add(new Token(sql.substring(start, i), start, i));
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end == -1 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end == -1 ? length : end + 2;
+            } else if (c == '(') {
+                if (depth == 0)
+                    tokens.add(new Token(GROUP, i, i + 1));
+                depth++;
+                i++;
+            } else if (c == ')') {
+                if (depth > 0)
+                    depth--;
+                i++;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && isWordPart(sql.charAt(i)))
+                    i++;
+                if (depth == 0)
+                    tokens.add(new Token(sql.substring(start, i).toLowerCase(Locale.ROOT), start, i));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '.';
+    }
+
+    /**
+     * @return index after the closing quote, a doubled quote is an escaped one
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+}
@@ -0,0 +1,230 @@
+package com.m2a.db.query;
+
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.query.WhereClause.QueryParam;
+import com.m2a.enums.Operator;
+import com.m2a.util.StringUtil;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * walks where clauses once, collecting the bound values and the structural
+ * part ({@link QueryShape.Clause}) that decides the sql text.
+ * <p>
+ * in / not in lists are bound as placeholders padded to a power of two so only a
+ * handful of sql texts exist per query. lists larger than the in list threshold are
+ * bound as one array on databases supporting it and loaded into {@link InListTable}
+ * otherwise
+ */
+public final class WhereClauseBinder {
+
+    public static final int DEFAULT_IN_LIST_THRESHOLD = 512;
+
+    private WhereClauseBinder() {
+    }
+
+    /**
+     * @param inLists collects the in lists to load into the temp table before the query runs
+     */
+    public static List<QueryShape.Clause> bind(List<WhereClause> whereClauseList, String rootAlias,
+                                               SqlDialect dialect, int inListThreshold,
+                                               List<Object> values, List<InListTable> inLists) {
+        if (whereClauseList == null || whereClauseList.isEmpty())
+            return Collections.emptyList();
+        List<QueryShape.Clause> clauses = new ArrayList<>(whereClauseList.size());
+        for (WhereClause wc : whereClauseList) {
+            QueryShape.Clause clause = bind(wc, rootAlias, dialect, inListThreshold, values, inLists);
+            if (clause != null)
+                clauses.add(clause);
+        }
+        return clauses;
+    }
+
+    private static QueryShape.Clause bind(WhereClause wc, String rootAlias, SqlDialect dialect,
+                                          int inListThreshold, List<Object> values, List<InListTable> inLists) {
+        List<QueryShape.Param> params = null;
+        for (QueryParam qp : wc) {
+            Object value = qp.getObject(); // can be comma separated seam
+            // expression
+            Operator paramOperator = qp.getOperator();
+            if (!(Operator.IS_NULL.equals(paramOperator)
+                    || Operator.NOT_NULL.equals(paramOperator))) {
+                if (shouldIgnoreClause(value))
+                    continue;
+            }
+            String columnExpression = qp.getColumnExpression();
+            if (!columnExpression.contains("."))
+                columnExpression = rootAlias + "." + columnExpression;
+
+            Function function = qp.getFunction();
+            if (function != null)
+                columnExpression = function.parseColumn(columnExpression);
+
+            value = convertToSqlDate(value);
+
+            if (params == null)
+                params = new ArrayList<>(4);
+            if (Operator.IS_NULL.equals(paramOperator) || Operator.NOT_NULL.equals(paramOperator)) {
+                params.add(new QueryShape.Param(columnExpression, paramOperator));
+            } else if (Operator.IN.equals(paramOperator) || Operator.NOT_IN.equals(paramOperator)) {
+                params.add(In(columnExpression, paramOperator, value, dialect, inListThreshold, values, inLists));
+            } else {
+                params.add(new QueryShape.Param(columnExpression, paramOperator));
+                parseValue(value, paramOperator, function, values);
+            }
+        }
+        if (params == null)
+            return null;
+        return new QueryShape.Clause(wc.getLogicalOperand(), wc.getLogicalOperandClause(), wc.getGroupOperand(), params);
+    }
+
+    static Object convertToSqlDate(Object value) {
+        if (value instanceof Date d && !(value instanceof java.sql.Date))
+            // jdbc uses sql date (convert java util date to sql date
+            value = new java.sql.Date(d.getTime());
+        return value;
+    }
+
+    private static boolean shouldIgnoreClause(Object value) {
+        if (value == null)
+            return true;
+        if (value instanceof String)
+            return String.valueOf(value).trim().isEmpty();
+        return false;
+    }
+
+    /**
+     * @param value comma separated String/Int (inlined as is) or array / Collection of values
+     */
+    private static QueryShape.Param In(String columnExpression, Operator operator, Object value,
+                                       SqlDialect dialect, int inListThreshold,
+                                       List<Object> values, List<InListTable> inLists) {
+        if (value instanceof String inValue) {
+            if (isSeamExpression(inValue))
+                throw new UnsupportedOperationException("in values can not be Seam Expression");
+            return new QueryShape.Param(columnExpression, operator, inValue, QueryShape.InBinding.INLINE, 0, null);
+        }
+        List<Object> inObject = new ArrayList<>();
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            for (int j = 0; j < length; j++)
+                inObject.add(convertToSqlDate(Array.get(value, j)));
+        } else if (value instanceof Collection<?> collection) {
+            for (Object objectVal : collection)
+                inObject.add(convertToSqlDate(objectVal));
+        } else {
+            inObject.add(convertToSqlDate(value));
+        }
+        int size = inObject.size();
+        if (size > inListThreshold) {
+            if (dialect.supportsArrayBinding()) {
+                values.add(toTypedArray(inObject));
+                return new QueryShape.Param(columnExpression, operator, null, QueryShape.InBinding.ARRAY, size, null);
+            }
+            // lists after the first use placeholders when the table can only be read once
+            boolean tableFree = inLists.isEmpty() || dialect.supportsInListTableReuse();
+            String column = dialect.supportsInListTable() && tableFree ? InListTable.columnFor(inObject) : null;
+            if (column != null) {
+                int listId = inLists.size() + 1;
+                inLists.add(new InListTable(dialect, listId, column, inObject));
+                values.add(listId);
+                return new QueryShape.Param(columnExpression, operator, null, QueryShape.InBinding.TEMP_TABLE,
+                        size, column);
+            }
+        }
+        int bucket = size > inListThreshold ? size : bucket(size, inListThreshold);
+        values.addAll(inObject);
+        // repeating the last value keeps in and not in semantics
+        for (int j = size; j < bucket; j++)
+            values.add(inObject.get(size - 1));
+        return new QueryShape.Param(columnExpression, operator, null, QueryShape.InBinding.PLACEHOLDERS, bucket, null);
+    }
+
+    /**
+     * next power of two, never above the threshold
+     */
+    static int bucket(int size, int inListThreshold) {
+        if (size <= 1)
+            return size;
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        return Math.min(bucket, Math.max(inListThreshold, size));
+    }
+
+    private static Object toTypedArray(List<Object> inObject) {
+        Class<?> type = null;
+        for (Object objectVal : inObject) {
+            if (objectVal == null)
+                continue;
+            if (type == null)
+                type = objectVal.getClass();
+            else if (type != objectVal.getClass())
+                return inObject.toArray();
+        }
+        if (type == null)
+            return inObject.toArray();
+        Object array = Array.newInstance(type, inObject.size());
+        for (int j = 0; j < inObject.size(); j++)
+            Array.set(array, j, inObject.get(j));
+        return array;
+    }
+
+    /**
+     * used only for query operator
+     */
+    private static void parseValue(Object val, Operator paramOperator, Function function, List<Object> values) {
+        if (val instanceof String valueExpression) {
+            if (valueExpression.contains(",")) {
+                // more than one parameter value
+                String[] valueItem = valueExpression.split(",");
+                for (String item : valueItem)
+                    parseExpression(item, paramOperator, function, values);
+            } else {
+                parseExpression(valueExpression, paramOperator, function, values);
+            }
+        } else {
+            // is not string
+            if (val != null) {
+                if (function != null)
+                    val = function.parseColumnValue(val);
+                val = convertToSqlDate(val);
+                values.add(val);
+            }
+        }
+    }
+
+    private static void parseExpression(String valueExpression, Operator paramOperator, Function function,
+                                        List<Object> values) {
+        // is seam expression
+        Object evalValue = null;
+        if (StringUtil.isNotEmpty(valueExpression)) {
+            evalValue = valueExpression;
+        }
+
+        if (evalValue != null) {
+            if (Operator.LIKE.equals(paramOperator)) {
+                evalValue = "%" + evalValue + "%";
+            }
+            if (Operator.BEGIN_WITH.equals(paramOperator)) {
+                evalValue = evalValue + "%";
+            }
+            if (Operator.END_WITH.equals(paramOperator)) {
+                evalValue = "%" + evalValue;
+            }
+            if (function != null)
+                evalValue = function.parseColumnValue(evalValue);
+            evalValue = convertToSqlDate(evalValue);
+            values.add(evalValue);
+        }
+    }
+
+    private static boolean isSeamExpression(Object valueExpression) {
+        if (valueExpression instanceof String ve)
+            return ve.startsWith("#{") && ve.endsWith("}");
+        return false;
+    }
+}
@@ -0,0 +1,168 @@
+package com.m2a.db.worker;
+
+import org.hibernate.SessionFactory;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * {@link DBUtil} calls returning a {@link CompletableFuture}, one instance is shared by the
+ * application. every call runs on a virtual thread with a db util of its own (a hibernate
+ * session is not thread safe) opened through the {@link SessionScope}.
+ * <p>
+ * calls on the same session factory or data source share one bulkhead, a semaphore with
+ * max concurrent permits, so they never ask the pool for more connections than that. an
+ * instance asking for other permits on the same one is rejected. a call waiting for a
+ * permit only parks its virtual thread
+ */
+public class AsyncDBUtil implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_CONCURRENT = 10;
+
+    /**
+     * bulkhead of every session factory or data source
+     */
+    private static final Map<Object, Bulkhead> BULKHEADS = new WeakHashMap<>();
+
+    private record Bulkhead(Semaphore semaphore, int maxConcurrent) {
+    }
+
+    private final SessionScope sessionScope;
+    private final Semaphore bulkhead;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * set on the db util of every call, null when calls are only bounded by the bulkhead
+     */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
+    public AsyncDBUtil(SessionFactory sessionFactory) {
+        this(sessionFactory, DEFAULT_MAX_CONCURRENT);
+    }
+
+    public AsyncDBUtil(SessionFactory sessionFactory, int maxConcurrent) {
+        this(SessionScope.of(sessionFactory), bulkhead(sessionFactory, maxConcurrent));
+    }
+
+    public AsyncDBUtil(DataSource dataSource) {
+        this(dataSource, DEFAULT_MAX_CONCURRENT);
+    }
+
+    public AsyncDBUtil(DataSource dataSource, int maxConcurrent) {
+        this(SessionScope.of(dataSource), bulkhead(dataSource, maxConcurrent));
+    }
+
+    public AsyncDBUtil(SessionScope sessionScope, Semaphore bulkhead) {
+        if (sessionScope == null)
+            throw new IllegalArgumentException("session scope can not be null");
+        if (bulkhead == null)
+            throw new IllegalArgumentException("bulkhead can not be null");
+        this.sessionScope = sessionScope;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * @return the bulkhead shared by every instance on the session factory or data source
+     * @throws IllegalArgumentException when it already has other max concurrent permits
+     */
+    public static Semaphore bulkhead(Object sessionFactoryOrDataSource, int maxConcurrent) {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("max concurrent must be positive");
+        Bulkhead bulkhead;
+        synchronized (BULKHEADS) {
+            bulkhead = BULKHEADS.computeIfAbsent(sessionFactoryOrDataSource,
+                    key -> new Bulkhead(new Semaphore(maxConcurrent, true), maxConcurrent));
+        }
+        if (bulkhead.maxConcurrent() != maxConcurrent)
+            throw new IllegalArgumentException("bulkhead has " + bulkhead.maxConcurrent()
+                    + " max concurrent permits, can not share it with " + maxConcurrent);
+        return bulkhead.semaphore();
+    }
+
+    /**
+     * permits of the bulkhead not in use
+     */
+    public int getAvailablePermits() {
+        return bulkhead.availablePermits();
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * runs the work with a db util of its own once the bulkhead lets it through
+     */
+    public <T> CompletableFuture<T> submit(Function<DBUtil, T> work) {
+        return CompletableFuture.supplyAsync(() -> call(work), executor);
+    }
+
+    private <T> T call(Function<DBUtil, T> work) {
+        try {
+            bulkhead.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for the bulkhead", e);
+        }
+        try {
+            List<T> result = new ArrayList<>(1);
+            ConcurrencyLimiter limiter = concurrencyLimiter;
+            sessionScope.run(dbUtil -> {
+                if (limiter != null)
+                    dbUtil.setConcurrencyLimiter(limiter);
+                result.add(work.apply(dbUtil));
+            });
+            if (result.isEmpty())
+                throw new IllegalStateException("session scope did not run the work");
+            return result.getFirst();
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public CompletableFuture<List<Map<String, Object>>> executeQueryAsync(String sql, Object... params) {
+        return submit(dbUtil -> dbUtil.executeQuery(sql, params));
+    }
+
+    public <T> CompletableFuture<T> executeQueryAsync(Class<T> clz, String sql, Object... params) {
+        return submit(dbUtil -> dbUtil.executeQuery(clz, sql, params));
+    }
+
+    public <E> CompletableFuture<List<E>> executeQueryListAsync(Class<E> clz, String sql, Object... params) {
+        return submit(dbUtil -> dbUtil.executeQueryList(clz, sql, params));
+    }
+
+    public <T> CompletableFuture<T> executeScalarAsync(String sql, Class<T> type, Object... params) {
+        return submit(dbUtil -> dbUtil.executeScalar(sql, type, params));
+    }
+
+    public CompletableFuture<ColumnBatch> executeColumnarAsync(String sql, Object... params) {
+        return submit(dbUtil -> dbUtil.executeColumnar(sql, params));
+    }
+
+    public CompletableFuture<Void> executeUpdateAsync(String sql, Object... params) {
+        return submit(dbUtil -> {
+            dbUtil.executeUpdate(sql, params);
+            return null;
+        });
+    }
+
+    /**
+     * stops accepting calls, running calls complete
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
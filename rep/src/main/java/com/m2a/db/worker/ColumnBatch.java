@@ -0,0 +1,318 @@
+package com.m2a.db.worker;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * query result read column by column into primitive arrays, for aggregate and report
+ * queries over many rows. integral columns become {@code long[]} or {@code int[]},
+ * floating point and decimal columns {@code double[]}, character columns dictionary
+ * encoded {@code int[]} codes, anything else an {@code Object[]}. every column has a
+ * null bitmap, the value of a null row is 0 (-1 for a string code)
+ */
+@Getter
+public final class ColumnBatch {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int rowCount;
+    private final List<Column> columns;
+
+    private ColumnBatch(int rowCount, List<Column> columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    /**
+     * reads the remaining rows of the result set
+     */
+    public static ColumnBatch read(ResultSet rs) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        List<Column> columns = new ArrayList<>(meta.getColumnCount());
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String label = meta.getColumnLabel(i);
+            if (label == null || label.isEmpty())
+                label = meta.getColumnName(i);
+            columns.add(column(label, meta, i));
+        }
+        int rows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columns.size(); i++)
+                columns.get(i).read(rs, i + 1, rows);
+            rows++;
+        }
+        for (Column column : columns)
+            column.trim(rows);
+        return new ColumnBatch(rows, List.copyOf(columns));
+    }
+
+    private static Column column(String label, ResultSetMetaData meta, int index) throws SQLException {
+        return switch (meta.getColumnType(index)) {
+            case Types.BIGINT -> new LongColumn(label);
+            case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> new IntColumn(label);
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> new DoubleColumn(label);
+            // oracle NUMBER without precision reports precision 0
+            case Types.NUMERIC, Types.DECIMAL -> meta.getScale(index) == 0 && meta.getPrecision(index) > 0
+                    && meta.getPrecision(index) <= 18 ? new LongColumn(label) : new DoubleColumn(label);
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR ->
+                    new StringColumn(label);
+            default -> new ObjectColumn(label);
+        };
+    }
+
+    /**
+     * @return the column with the label, case insensitive, null when there is none
+     */
+    public Column getColumn(String label) {
+        for (Column column : columns)
+            if (column.getLabel().equalsIgnoreCase(label))
+                return column;
+        return null;
+    }
+
+    @Getter
+    public static abstract class Column {
+        private final String label;
+        /**
+         * rows holding null
+         */
+        private final BitSet nulls = new BitSet();
+
+        Column(String label) {
+            this.label = label;
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * value of the row boxed, null for a null row
+         */
+        public abstract Object get(int row);
+
+        abstract void read(ResultSet rs, int index, int row) throws SQLException;
+
+        /**
+         * shrinks the arrays to the row count
+         */
+        abstract void trim(int rows);
+
+        void readNull(ResultSet rs, int row) throws SQLException {
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        static int grow(int length, int row) {
+            return row < length ? length : Math.max(INITIAL_CAPACITY, length * 2);
+        }
+    }
+
+    @Getter
+    public static final class LongColumn extends Column {
+        private long[] values = new long[0];
+
+        LongColumn(String label) {
+            super(label);
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        /**
+         * sum of the non null rows, null rows hold 0
+         */
+        public long sum() {
+            long sum = 0;
+            for (long value : values)
+                sum += value;
+            return sum;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getLong(index);
+            readNull(rs, row);
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    @Getter
+    public static final class IntColumn extends Column {
+        private int[] values = new int[0];
+
+        IntColumn(String label) {
+            super(label);
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        public long sum() {
+            long sum = 0;
+            for (int value : values)
+                sum += value;
+            return sum;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getInt(index);
+            readNull(rs, row);
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    @Getter
+    public static final class DoubleColumn extends Column {
+        private double[] values = new double[0];
+
+        DoubleColumn(String label) {
+            super(label);
+        }
+
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        public double sum() {
+            double sum = 0;
+            for (double value : values)
+                sum += value;
+            return sum;
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            values[row] = rs.getDouble(index);
+            readNull(rs, row);
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+
+    /**
+     * strings as codes into a dictionary of the distinct values in order of appearance
+     */
+    @Getter
+    public static final class StringColumn extends Column {
+        private int[] codes = new int[0];
+        private final List<String> dictionary = new ArrayList<>();
+        @Getter(AccessLevel.NONE)
+        private Map<String, Integer> lookup = new HashMap<>();
+
+        StringColumn(String label) {
+            super(label);
+        }
+
+        public int getCode(int row) {
+            return codes[row];
+        }
+
+        @Override
+        public String get(int row) {
+            int code = codes[row];
+            return code == -1 ? null : dictionary.get(code);
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row == codes.length)
+                codes = Arrays.copyOf(codes, grow(codes.length, row));
+            String value = rs.getString(index);
+            if (value == null) {
+                codes[row] = -1;
+                getNulls().set(row);
+                return;
+            }
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        void trim(int rows) {
+            codes = Arrays.copyOf(codes, rows);
+            // only needed while reading
+            lookup = null;
+        }
+    }
+
+    @Getter
+    public static final class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        ObjectColumn(String label) {
+            super(label);
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void read(ResultSet rs, int index, int row) throws SQLException {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length, row));
+            Object value = rs.getObject(index);
+            values[row] = value;
+            if (value == null)
+                getNulls().set(row);
+        }
+
+        @Override
+        void trim(int rows) {
+            values = Arrays.copyOf(values, rows);
+        }
+    }
+}
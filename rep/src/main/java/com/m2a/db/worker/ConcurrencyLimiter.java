@@ -0,0 +1,147 @@
+package com.m2a.db.worker;
+
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * adaptive limit of the db calls running at the same time, shared by every {@link DBUtil}
+ * of a database (see {@link DBUtil#setConcurrencyLimiter}). the limit follows the observed
+ * latency with additive increase, multiplicative decrease: a call slower than the latency
+ * threshold, or failing with a timeout or transient error, multiplies the limit by the
+ * backoff ratio, a fast call while at least half the limit is in use raises it by one.
+ * <p>
+ * a call over the limit waits at most max wait for a permit and is then rejected with
+ * {@link LimitExceededException}, a max wait of 0 rejects at once
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final long DEFAULT_LATENCY_THRESHOLD_MILLIS = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitFreed = lock.newCondition();
+    private volatile int limit;
+    private volatile int inFlight;
+    private volatile long accepted;
+    private volatile long rejected;
+
+    /**
+     * default limits, calls over the limit are rejected at once
+     */
+    public ConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO,
+                DEFAULT_LATENCY_THRESHOLD_MILLIS, 0);
+    }
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                              long latencyThresholdMillis, long maxWaitMillis) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+        if (backoffRatio <= 0 || backoffRatio >= 1)
+            throw new IllegalArgumentException("backoff ratio must be between 0 and 1");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * calls that got a permit
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * calls rejected with {@link LimitExceededException}
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * waits for a permit up to max wait
+     *
+     * @return start time of the call, passed back to {@link #release}
+     */
+    long acquire() {
+        lock.lock();
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new LimitExceededException("concurrency limit " + limit + " reached");
+                }
+                try {
+                    remaining = permitFreed.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rejected++;
+                    throw new LimitExceededException("interrupted waiting for a permit");
+                }
+            }
+            inFlight++;
+            accepted++;
+        } finally {
+            lock.unlock();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * returns the permit and adapts the limit to the call
+     *
+     * @param failure exception of the call, null when it succeeded
+     */
+    void release(long start, RuntimeException failure) {
+        long latency = System.nanoTime() - start;
+        lock.lock();
+        try {
+            int used = inFlight;
+            inFlight--;
+            if (latency > latencyThresholdNanos || isOverload(failure)) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+            } else if (failure == null && used * 2 >= limit && limit < maxLimit) {
+                limit++;
+                permitFreed.signal();
+            }
+            permitFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * timeouts and transient errors (pool exhausted, deadlock victim) tell the database is
+     * overloaded, other errors say nothing about its latency
+     */
+    private static boolean isOverload(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause())
+            if (t instanceof SQLTimeoutException || t instanceof SQLTransientException)
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+package com.m2a.db.worker;
+
+import lombok.Getter;
+import org.apache.commons.dbutils.BasicRowProcessor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * row processor for queries carrying a {@code count(*) over()} column, reads the
+ * total count from the first row and keeps the column out of the mapped rows
+ */
+@Getter
+public class CountingRowProcessor extends BasicRowProcessor {
+
+    private final String countColumn;
+    private Long count;
+
+    public CountingRowProcessor(String countColumn) {
+        this.countColumn = countColumn;
+    }
+
+    @Override
+    public Map<String, Object> toMap(ResultSet rs) throws SQLException {
+        Map<String, Object> row = super.toMap(rs);
+        Object value = row.remove(countColumn);
+        if (count == null && value instanceof Number n)
+            count = n.longValue();
+        return row;
+    }
+
+    @Override
+    public <T> T toBean(ResultSet rs, Class<? extends T> type) throws SQLException {
+        readCount(rs);
+        return super.toBean(rs, type);
+    }
+
+    @Override
+    public <T> List<T> toBeanList(ResultSet rs, Class<? extends T> type) throws SQLException {
+        List<T> results = new ArrayList<>();
+        while (rs.next()) {
+            readCount(rs);
+            results.add(super.toBean(rs, type));
+        }
+        return results;
+    }
+
+    void readCount(ResultSet rs) throws SQLException {
+        if (count == null)
+            count = rs.getLong(countColumn);
+    }
+}
@@ -1,92 +1,627 @@
 package com.m2a.db.worker;
 
+import com.m2a.db.dialect.MySqlDialect;
+import com.m2a.db.dialect.OracleDialect;
+import com.m2a.db.dialect.SqlDialect;
+import com.m2a.db.dialect.SqlDialects;
 import com.m2a.reflections.ReflectionUtil;
 import com.m2a.util.CollectionUtil;
-import org.apache.commons.beanutils.PropertyUtils;
+import com.m2a.util.DoubleList;
+import com.m2a.util.IntList;
+import com.m2a.util.LongList;
+import org.apache.commons.dbutils.BasicRowProcessor;
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.RowProcessor;
+import org.hibernate.JDBCException;
 import org.hibernate.Session;
-import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
+import org.hibernate.resource.jdbc.ResourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 public class DBUtil {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(DBUtil.class);
+    /**
+     * connection urls already reported as lacking the batch rewrite property
+     */
+    private final static Set<String> BATCH_REWRITE_CHECKED = ConcurrentHashMap.newKeySet();
+
+    /**
+     * rows fetched per round trip by cursors
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * row processor of the default maps and beans, the works of this package recognize it
+     * and map with their own row sets and mappers
+     */
+    public static final RowProcessor DEFAULT_ROW_PROCESSOR = new BasicRowProcessor();
 
     Session session;
+    /**
+     * set instead of session when hibernate is not used, each call borrows a connection
+     */
+    private final DataSource dataSource;
+    private SqlDialect dialect;
+    /**
+     * unit of work open on the calling thread, every work of that thread runs on its
+     * connection. per thread because the db util is shared, other threads keep their own
+     */
+    private final ThreadLocal<UnitOfWork> unitOfWork = new ThreadLocal<>();
+    /**
+     * shared limit of concurrent calls, null when calls are not limited
+     */
+    private ConcurrencyLimiter concurrencyLimiter;
+    /**
+     * replicas serving the selects, null when everything runs on the primary
+     */
+    private ReplicaSet replicaSet;
+    /**
+     * depth of the {@link #onPrimary} calls open on the calling thread, null outside them
+     */
+    private final ThreadLocal<Integer> primaryPinned = new ThreadLocal<>();
+    /**
+     * hedges selects across the replicas, null when selects are not hedged
+     */
+    private ReadHedger readHedger;
 
     public DBUtil(Session session) {
         if (session == null)
             throw new IllegalArgumentException("session can not be null");
         this.session = session;
+        this.dataSource = null;
+    }
+
+    /**
+     * hibernate free mode, every call runs on a connection of the data source in its
+     * auto commit mode and returns it to the pool afterwards
+     */
+    public DBUtil(DataSource dataSource) {
+        if (dataSource == null)
+            throw new IllegalArgumentException("data source can not be null");
+        this.dataSource = dataSource;
     }
 
     public void logger(String sql) {
         LOGGER.info("execution : {}", sql);
     }
 
-    public boolean isDatabaseOracle() {
-        boolean isOracle = false;
-        SessionFactory sessionFactory = session.getSessionFactory();
+    /**
+     * resolved on first use, cached per session factory or data source by {@link SqlDialects}
+     */
+    public SqlDialect getDialect() {
+        if (dialect == null)
+            dialect = session != null ? SqlDialects.resolve(session) : SqlDialects.resolve(dataSource);
+        return dialect;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * every work of this db util waits for a permit of the limiter, a unit of work takes one
+     * permit for all of its calls. streams are not limited
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public ReplicaSet getReplicaSet() {
+        return replicaSet;
+    }
+
+    /**
+     * selects of this db util run on the replicas, see {@link #doReadWork}
+     */
+    public void setReplicaSet(ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+    }
+
+    public ReadHedger getReadHedger() {
+        return readHedger;
+    }
+
+    /**
+     * selects of this db util without side effects are hedged when there are two replicas
+     * or more, see {@link ReadHedger}
+     */
+    public void setReadHedger(ReadHedger readHedger) {
+        this.readHedger = readHedger;
+    }
+
+    /**
+     * runs the action with every select on the primary, for reads that must see the
+     * writes just made (read your writes). only the calling thread is pinned
+     */
+    public <T> T onPrimary(Function<DBUtil, T> action) {
+        Integer depth = primaryPinned.get();
+        primaryPinned.set(depth == null ? 1 : depth + 1);
         try {
-            Object dialect = PropertyUtils.getProperty(sessionFactory, "dialect");
-            if (dialect.toString().contains("Oracle"))
-                isOracle = true;
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            // DO NOTHING
+            return action.apply(this);
+        } finally {
+            if (depth == null)
+                primaryPinned.remove();
+            else
+                primaryPinned.set(depth);
         }
-        return isOracle;
+    }
+
+    public boolean isDatabaseOracle() {
+        return getDialect() instanceof OracleDialect;
     }
 
     public boolean isDatabaseMySQL() {
-        boolean isMysql = false;
-        SessionFactory sessionFactory = session.getSessionFactory();
+        return getDialect() instanceof MySqlDialect;
+    }
+
+    /**
+     * runs the work on the session connection or a connection of the data source, always
+     * on the primary
+     */
+    public void doWork(Work work) {
+        UnitOfWork uow = unitOfWork.get();
+        if (uow != null) {
+            try {
+                work.execute(uow.getConnection());
+            } catch (SQLException e) {
+                throw new JDBCException("could not execute work", e);
+            }
+            return;
+        }
+        if (concurrencyLimiter == null) {
+            execute(work);
+            return;
+        }
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+        long start = limiter.acquire();
+        RuntimeException failure = null;
         try {
-            Object dialect = PropertyUtils.getProperty(sessionFactory, "dialect");
-            if (dialect.toString().contains("MySQL")) {
-                isMysql = true;
+            execute(work);
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            limiter.release(start, failure);
+        }
+    }
+
+    /**
+     * runs a select on the replica with the fewest outstanding requests. it runs on the
+     * primary like {@link #doWork} when there are no replicas, inside a unit of work or
+     * {@link #onPrimary}, and while the session is in a transaction that is not read only.
+     * the concurrency limiter only guards the primary
+     */
+    public void doReadWork(Work work) {
+        if (!isReadFromReplica()) {
+            doWork(work);
+            return;
+        }
+        ReplicaSet replicas = replicaSet;
+        ReplicaSet.Replica replica = replicas.acquire();
+        try (Connection con = replica.getDataSource().getConnection()) {
+            work.execute(con);
+        } catch (SQLException e) {
+            throw new JDBCException("could not execute work on replica", e);
+        } finally {
+            replicas.release(replica);
+        }
+    }
+
+    /**
+     * {@link #doReadWork(Work)} for a select that can run twice, hedged when the db util has
+     * a read hedger. the work must keep its result in its own fields
+     *
+     * @param newWork creates the work, once per replica it is sent to
+     * @return the work that ran to the end
+     */
+    public <W extends Work> W doReadWork(Supplier<W> newWork) {
+        ReplicaSet replicas = replicaSet;
+        ReadHedger hedger = readHedger;
+        if (hedger != null && isReadFromReplica() && replicas.getReplicas().size() > 1)
+            return hedger.read(replicas, newWork);
+        W work = newWork.get();
+        doReadWork(work);
+        return work;
+    }
+
+    private boolean isReadFromReplica() {
+        return replicaSet != null && !isReadingOwnWrites();
+    }
+
+    /**
+     * true when the calling thread may have writes other connections do not see yet, in a
+     * unit of work, pinned on the primary or in a write transaction of the session
+     */
+    public boolean isReadingOwnWrites() {
+        return unitOfWork.get() != null || primaryPinned.get() != null || isInWriteTransaction();
+    }
+
+    /**
+     * spring read only transactions mark the session default read only
+     */
+    private boolean isInWriteTransaction() {
+        return session != null && session.isJoinedToTransaction() && !session.isDefaultReadOnly();
+    }
+
+    /**
+     * in data source mode a connection that is not in auto commit is committed after the
+     * work and rolled back when it fails, the pool does not keep its writes otherwise
+     */
+    private void execute(Work work) {
+        if (session != null) {
+            session.doWork(work);
+            return;
+        }
+        try (Connection con = dataSource.getConnection()) {
+            if (con.getAutoCommit()) {
+                work.execute(con);
+                return;
             }
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-            // DO NOTHING
+            try {
+                work.execute(con);
+                con.commit();
+            } catch (SQLException | RuntimeException | Error e) {
+                rollback(con, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new JDBCException("could not execute work", e);
+        }
+    }
+
+    private static void rollback(Connection con, Throwable failure) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
         }
-        return isMysql;
+    }
+
+    /**
+     * runs the action on one connection checkout, every query, update and scalar of this
+     * db util inside it (also through {@link com.m2a.db.query.QueryController}) shares the
+     * connection and a statement prepared for a sql is reused by later calls with the same
+     * sql. streams are not part of the unit of work. a nested call joins the open one.
+     * only calls of the thread running the action join it, other threads sharing the db
+     * util keep their own connections
+     */
+    public void inUnitOfWork(Consumer<DBUtil> action) {
+        inReturningUnitOfWork(dbUtil -> {
+            action.accept(dbUtil);
+            return null;
+        });
+    }
+
+    public <T> T inReturningUnitOfWork(Function<DBUtil, T> action) {
+        if (unitOfWork.get() != null)
+            return action.apply(this);
+        List<T> result = new ArrayList<>(1);
+        doWork(con -> {
+            try (UnitOfWork uow = new UnitOfWork(con)) {
+                unitOfWork.set(uow);
+                result.add(action.apply(this));
+            } finally {
+                unitOfWork.remove();
+            }
+        });
+        return result.getFirst();
     }
 
     public <T> T executeScalar(String sql, Class<T> type, Object... params) {
-        DbScalarWork<T> sw = new DbScalarWork<>(sql, params);
-        session.doWork(sw);
+        DbScalarWork<T> sw = doReadWork(() -> new DbScalarWork<>(sql, params));
         this.logger(sql);
         return sw.getResult();
     }
 
     public List<Map<String, Object>> executeQuery(String sql, Object... params) {
-        DbWork dbWork = new DbWork(sql, params);
-        session.doWork(dbWork);
+        DbWork dbWork = doReadWork(() -> new DbWork(sql, params));
+        this.logger(sql);
+        return dbWork.getResult();
+    }
+
+    /**
+     * rows of the query without a map per row, {@link RowSet#asMaps()} gives the same rows
+     * {@link #executeQuery(String, Object...)} returns
+     */
+    public RowSet executeRowSet(String sql, Object... params) {
+        return read(sql, params, RowSet::read, true);
+    }
+
+    /**
+     * rows of the query read into primitive column arrays, see {@link ColumnBatch}
+     */
+    public ColumnBatch executeColumnar(String sql, Object... params) {
+        return read(sql, params, ColumnBatch::read, true);
+    }
+
+    /**
+     * first column of every row as a primitive, rows where it is null are skipped
+     */
+    public LongList executeLongColumn(String sql, Object... params) {
+        return read(sql, params, rs -> {
+            LongList values = new LongList();
+            while (rs.next()) {
+                long value = rs.getLong(1);
+                if (!rs.wasNull())
+                    values.add(value);
+            }
+            return values;
+        }, true);
+    }
+
+    public IntList executeIntColumn(String sql, Object... params) {
+        return read(sql, params, rs -> {
+            IntList values = new IntList();
+            while (rs.next()) {
+                int value = rs.getInt(1);
+                if (!rs.wasNull())
+                    values.add(value);
+            }
+            return values;
+        }, true);
+    }
+
+    public DoubleList executeDoubleColumn(String sql, Object... params) {
+        return read(sql, params, rs -> {
+            DoubleList values = new DoubleList();
+            while (rs.next()) {
+                double value = rs.getDouble(1);
+                if (!rs.wasNull())
+                    values.add(value);
+            }
+            return values;
+        }, true);
+    }
+
+    /**
+     * streaming variant of {@link #executeLongColumn}, every value is passed to the action
+     * while the result is read with the default fetch size and nothing is collected
+     */
+    public void forEachLong(LongConsumer action, String sql, Object... params) {
+        read(sql, params, rs -> {
+            while (rs.next()) {
+                long value = rs.getLong(1);
+                if (!rs.wasNull())
+                    action.accept(value);
+            }
+            return null;
+        }, false);
+    }
+
+    public void forEachInt(IntConsumer action, String sql, Object... params) {
+        read(sql, params, rs -> {
+            while (rs.next()) {
+                int value = rs.getInt(1);
+                if (!rs.wasNull())
+                    action.accept(value);
+            }
+            return null;
+        }, false);
+    }
+
+    public void forEachDouble(DoubleConsumer action, String sql, Object... params) {
+        read(sql, params, rs -> {
+            while (rs.next()) {
+                double value = rs.getDouble(1);
+                if (!rs.wasNull())
+                    action.accept(value);
+            }
+            return null;
+        }, false);
+    }
+
+    /**
+     * reads the whole result through a forward only statement with the default fetch size
+     *
+     * @param hedged whether the handler has no side effects and may read the result twice
+     */
+    private <T> T read(String sql, Object[] params, ResultSetHandler<T> handler, boolean hedged) {
+        HandlerWork<T> work;
+        if (hedged) {
+            work = doReadWork(() -> new HandlerWork<>(sql, params, handler));
+        } else {
+            work = new HandlerWork<>(sql, params, handler);
+            doReadWork(work);
+        }
+        this.logger(sql);
+        return work.result;
+    }
+
+    private static final class HandlerWork<T> implements Work {
+        private final String sql;
+        private final Object[] params;
+        private final ResultSetHandler<T> handler;
+        private T result;
+
+        private HandlerWork(String sql, Object[] params, ResultSetHandler<T> handler) {
+            this.sql = sql;
+            this.params = params;
+            this.handler = handler;
+        }
+
+        @Override
+        public void execute(Connection con) throws SQLException {
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(DbCursor.fetchSize(con, DEFAULT_FETCH_SIZE));
+                new QueryRunner().fillStatement(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    result = handler.handle(rs);
+                }
+            }
+        }
+    }
+
+    public List<Map<String, Object>> executeQuery(RowProcessor rowProcessor, String sql, Object... params) {
+        DbWork dbWork = new DbWork(sql, params, rowProcessor);
+        doReadWork(dbWork);
         this.logger(sql);
         return dbWork.getResult();
     }
 
     public <T> T executeQuery(Class<T> clz, String sql, Object... params) {
-        DbObjectWork<T> dbWork = new DbObjectWork<T>(sql, params, clz);
-        session.doWork(dbWork);
+        DbObjectWork<T> dbWork = doReadWork(() -> new DbObjectWork<>(sql, params, clz));
         this.logger(sql);
         return dbWork.getInstance();
     }
 
     public <E> List<E> executeQueryList(Class<E> clz, String sql, Object... params) {
-        DbListWork<E> dbWork = new DbListWork<>(sql, params, clz);
-        session.doWork(dbWork);
+        DbListWork<E> dbWork = doReadWork(() -> new DbListWork<>(sql, params, clz));
+        this.logger(sql);
+        return dbWork.getInstance();
+    }
+
+    public <E> List<E> executeQueryList(Class<E> clz, RowProcessor rowProcessor, String sql, Object... params) {
+        DbListWork<E> dbWork = new DbListWork<>(sql, params, clz, rowProcessor);
+        doReadWork(dbWork);
         this.logger(sql);
         return dbWork.getInstance();
     }
 
+    /**
+     * rows read through a forward only cursor while the stream is consumed, the stream
+     * must be closed and the session (transaction on postgresql) kept open until then.
+     * in session mode the cursor is registered with the session, its connection is not
+     * released under it after a statement, and it is closed with the transaction when
+     * the connection is released after it: consume the stream inside the transaction.
+     * in data source mode the stream holds its own connection
+     */
+    public Stream<Map<String, Object>> stream(int fetchSize, String sql, Object... params) {
+        return stream(DEFAULT_ROW_PROCESSOR, fetchSize, sql, params);
+    }
+
+    public Stream<Map<String, Object>> stream(RowProcessor rowProcessor, int fetchSize, String sql, Object... params) {
+        return stream(null, null, rowProcessor, fetchSize, sql, params);
+    }
+
+    /**
+     * @param setup   runs on the connection of the cursor before it opens, may be null
+     * @param cleanup runs on that connection when the stream is closed, may be null. both
+     *                are for session state the query reads, like temp tables
+     */
+    public Stream<Map<String, Object>> stream(Work setup, Work cleanup, RowProcessor rowProcessor, int fetchSize,
+                                              String sql, Object... params) {
+        this.logger(sql);
+        return cursor(setup, cleanup, con -> DbCursor.of(con, sql, params, fetchSize, rowProcessor));
+    }
+
+    public <E> Stream<E> stream(Class<E> clz, int fetchSize, String sql, Object... params) {
+        return stream(clz, DEFAULT_ROW_PROCESSOR, fetchSize, sql, params);
+    }
+
+    public <E> Stream<E> stream(Class<E> clz, RowProcessor rowProcessor, int fetchSize, String sql, Object... params) {
+        return stream(clz, null, null, rowProcessor, fetchSize, sql, params);
+    }
+
+    public <E> Stream<E> stream(Class<E> clz, Work setup, Work cleanup, RowProcessor rowProcessor, int fetchSize,
+                                String sql, Object... params) {
+        this.logger(sql);
+        return cursor(setup, cleanup, con -> DbCursor.of(con, sql, params, fetchSize, rowProcessor, clz));
+    }
+
+    /**
+     * in data source mode the connection is held by the stream and leaves auto commit
+     * while it is open, postgresql only uses a server side cursor in a transaction
+     */
+    private <T> Stream<T> cursor(Work setup, Work cleanup, ReturningWork<DbCursor<T>> open) {
+        if (session != null) {
+            Stream<T> stream = session.doReturningWork(con -> register(open(con, setup, cleanup, open))).stream();
+            return cleanup == null ? stream : stream.onClose(() -> session.doWork(cleanup));
+        }
+        Connection con;
+        try {
+            con = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new JDBCException("could not open cursor", e);
+        }
+        try {
+            boolean autoCommit = con.getAutoCommit();
+            if (autoCommit)
+                con.setAutoCommit(false);
+            return open(con, setup, cleanup, open).stream().onClose(() -> {
+                try {
+                    if (cleanup != null)
+                        cleanup.execute(con);
+                } catch (SQLException e) {
+                    throw new JDBCException("could not clean up cursor connection", e);
+                } finally {
+                    release(con, autoCommit);
+                }
+            });
+        } catch (SQLException e) {
+            release(con, true);
+            throw new JDBCException("could not open cursor", e);
+        } catch (RuntimeException e) {
+            release(con, true);
+            throw e;
+        }
+    }
+
+    private static <T> DbCursor<T> open(Connection con, Work setup, Work cleanup, ReturningWork<DbCursor<T>> open)
+            throws SQLException {
+        if (setup == null)
+            return open.execute(con);
+        setup.execute(con);
+        try {
+            return open.execute(con);
+        } catch (SQLException | RuntimeException e) {
+            if (cleanup != null)
+                cleanup.execute(con);
+            throw e;
+        }
+    }
+
+    /**
+     * registers the cursor resources with the jdbc coordinator of the session, like its own
+     * statements, so it keeps the connection while they are open and closes them with it
+     */
+    private <T> DbCursor<T> register(DbCursor<T> cursor) {
+        if (!(session instanceof SharedSessionContractImplementor s))
+            return cursor;
+        ResourceRegistry registry = s.getJdbcCoordinator().getLogicalConnection().getResourceRegistry();
+        registry.register(cursor.statement(), false);
+        registry.register(cursor.resultSet(), cursor.statement());
+        return cursor.onClose(() -> {
+            registry.release(cursor.statement());
+            s.getJdbcCoordinator().afterStatementExecution();
+        });
+    }
+
+    private static void release(Connection con, boolean autoCommit) {
+        try (con) {
+            if (!con.getAutoCommit()) {
+                // read only cursor, nothing to keep
+                con.rollback();
+                con.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new JDBCException("could not release cursor connection", e);
+        }
+    }
+
     public <E> List<E> executeQueryListSingleColumnPrimitive(Class<E> clz, String sql, Object... params) {
         List<E> arr = new ArrayList<>();
         List<Map<String, Object>> query = executeQuery(sql, params);
@@ -110,6 +645,48 @@ public class DBUtil {
                 qr.update(con, query, params);
             }
         };
-        session.doWork(w);
+        doWork(w);
+    }
+
+    /**
+     * one prepared statement for all rows, executed every batch size rows
+     *
+     * @param rows parameter values of every row
+     * @return update count of every row, {@link java.sql.Statement#SUCCESS_NO_INFO} when
+     * the driver rewrites the batch
+     */
+    public int[] executeBatch(String sql, Iterable<Object[]> rows, int batchSize) {
+        return executeBatch(DbBatchWork.of(sql, rows, batchSize));
+    }
+
+    /**
+     * typed variant of {@link #executeBatch(String, Iterable, int)}, the binder sets the
+     * parameters of each row without an intermediate array
+     */
+    public <T> int[] executeBatch(String sql, Iterable<T> rows, int batchSize, DbBatchWork.Binder<T> binder) {
+        return executeBatch(new DbBatchWork<>(sql, rows, batchSize, binder));
+    }
+
+    private int[] executeBatch(DbBatchWork<?> work) {
+        this.logger(work.getSql());
+        String rewriteProperty = getDialect().batchRewriteProperty();
+        doWork(con -> {
+            if (rewriteProperty != null)
+                checkBatchRewrite(con, rewriteProperty);
+            work.execute(con);
+        });
+        return work.getUpdateCounts();
+    }
+
+    /**
+     * rewriting is a property of the connection url, it can not be switched on here,
+     * a url without it is reported once
+     */
+    private void checkBatchRewrite(Connection con, String property) throws SQLException {
+        String url = con.getMetaData().getURL();
+        if (url == null || url.contains(property + "=true") || !BATCH_REWRITE_CHECKED.add(url))
+            return;
+        LOGGER.info("{} is not set in the {} connection url, batches are sent statement by statement",
+                property, getDialect().getName());
     }
 }
@@ -0,0 +1,82 @@
+package com.m2a.db.worker;
+
+import lombok.Getter;
+import org.hibernate.jdbc.Work;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * one prepared statement executed for every row, sent to the database in batches of
+ * batch size. update counts are per row in row order, drivers rewriting batches
+ * report {@link java.sql.Statement#SUCCESS_NO_INFO} instead of the real count
+ */
+@Getter
+public class DbBatchWork<T> implements Work {
+
+    /**
+     * binds one row to the statement parameters
+     */
+    @FunctionalInterface
+    public interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    private final String sql;
+    private final Iterable<T> rows;
+    private final int batchSize;
+    private final Binder<T> binder;
+    private int[] updateCounts;
+
+    public DbBatchWork(String sql, Iterable<T> rows, int batchSize, Binder<T> binder) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive");
+        this.sql = sql;
+        this.rows = rows;
+        this.batchSize = batchSize;
+        this.binder = binder;
+    }
+
+    /**
+     * rows of parameter values, bound in order
+     */
+    public static DbBatchWork<Object[]> of(String sql, Iterable<Object[]> rows, int batchSize) {
+        return new DbBatchWork<>(sql, rows, batchSize, (ps, row) -> {
+            for (int i = 0; i < row.length; i++)
+                ps.setObject(i + 1, row[i]);
+        });
+    }
+
+    @Override
+    public void execute(Connection connection) throws SQLException {
+        int[] counts = new int[rows instanceof Collection<?> c ? c.size() : batchSize];
+        int size = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int pending = 0;
+            for (T row : rows) {
+                binder.bind(ps, row);
+                ps.addBatch();
+                if (++pending == batchSize) {
+                    counts = append(counts, size, ps.executeBatch());
+                    size += pending;
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                counts = append(counts, size, ps.executeBatch());
+                size += pending;
+            }
+        }
+        updateCounts = size == counts.length ? counts : Arrays.copyOf(counts, size);
+    }
+
+    private static int[] append(int[] counts, int size, int[] batch) {
+        if (size + batch.length > counts.length)
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, size + batch.length));
+        System.arraycopy(batch, 0, counts, size, batch.length);
+        return counts;
+    }
+}
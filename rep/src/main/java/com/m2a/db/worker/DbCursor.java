@@ -0,0 +1,174 @@
+package com.m2a.db.worker;
+
+import com.m2a.db.mapper.RowMappers;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.RowProcessor;
+import org.hibernate.JDBCException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * forward only, read only cursor over a query, rows are mapped one at a time while
+ * iterating so the result set is never held in memory as a whole.
+ * <p>
+ * postgresql only fetches in chunks (server side cursor) when auto commit is off, i.e.
+ * inside a transaction. mysql uses a server side cursor when the connection has
+ * {@code useCursorFetch=true}, otherwise rows are streamed one by one and the connection
+ * can not run another statement until the cursor is closed
+ */
+public class DbCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private static final int MYSQL_ROW_STREAMING = Integer.MIN_VALUE;
+
+    private final String sql;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> rowMapper;
+    private boolean fetched;
+    private boolean hasNext;
+    private boolean closed;
+    private Runnable onClose;
+
+    /**
+     * maps the current row of the result set
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    public DbCursor(Connection connection, String sql, Object[] params, int fetchSize, RowMapper<T> rowMapper)
+            throws SQLException {
+        this.sql = sql;
+        this.rowMapper = rowMapper;
+        PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        try {
+            ps.setFetchSize(fetchSize(connection, fetchSize));
+            new QueryRunner().fillStatement(ps, params);
+            this.resultSet = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+        this.statement = ps;
+    }
+
+    public static DbCursor<Map<String, Object>> of(Connection connection, String sql, Object[] params,
+                                                   int fetchSize, RowProcessor rowProcessor)
+            throws SQLException {
+        return new DbCursor<>(connection, sql, params, fetchSize, rowProcessor::toMap);
+    }
+
+    public static <E> DbCursor<E> of(Connection connection, String sql, Object[] params, int fetchSize,
+                                     RowProcessor rowProcessor, Class<E> type) throws SQLException {
+        if (DbListWork.mapped(rowProcessor)) {
+            CountingRowProcessor counter = rowProcessor instanceof CountingRowProcessor c ? c : null;
+            com.m2a.db.mapper.RowMapper<E> mapper = RowMappers.of(type);
+            return new DbCursor<>(connection, sql, params, fetchSize, rs -> {
+                if (counter != null)
+                    counter.readCount(rs);
+                return mapper.map(rs);
+            });
+        }
+        return new DbCursor<>(connection, sql, params, fetchSize, rs -> rowProcessor.toBean(rs, type));
+    }
+
+    PreparedStatement statement() {
+        return statement;
+    }
+
+    ResultSet resultSet() {
+        return resultSet;
+    }
+
+    /**
+     * runs the action once the cursor is closed, by the caller or at the last row
+     */
+    DbCursor<T> onClose(Runnable action) {
+        this.onClose = action;
+        return this;
+    }
+
+    static int fetchSize(Connection connection, int fetchSize) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        if (product != null && (product.contains("MySQL") || product.contains("MariaDB"))) {
+            String url = connection.getMetaData().getURL();
+            if (url == null || !url.contains("useCursorFetch=true"))
+                return MYSQL_ROW_STREAMING;
+        }
+        return fetchSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!fetched) {
+            try {
+                hasNext = !closed && resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw new JDBCException("could not read cursor", e, sql);
+            }
+            fetched = true;
+            if (!hasNext)
+                close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        fetched = false;
+        try {
+            return rowMapper.map(resultSet);
+        } catch (SQLException e) {
+            close();
+            throw new JDBCException("could not map row", e, sql);
+        }
+    }
+
+    /**
+     * stream closing the cursor on {@link Stream#close()}, use in try with resources
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        SQLException failure = null;
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            failure = e;
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            if (failure == null)
+                failure = e;
+            else
+                failure.addSuppressed(e);
+        }
+        if (onClose != null)
+            onClose.run();
+        if (failure != null)
+            throw new JDBCException("could not close cursor", failure, sql);
+    }
+}
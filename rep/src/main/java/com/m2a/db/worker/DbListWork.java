@@ -1,15 +1,20 @@
 package com.m2a.db.worker;
 
+import com.m2a.db.mapper.RowMapper;
+import com.m2a.db.mapper.RowMappers;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.RowProcessor;
 import org.apache.commons.dbutils.handlers.BeanListHandler;
 import org.hibernate.jdbc.Work;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 @RequiredArgsConstructor
@@ -21,6 +26,7 @@ public class DbListWork<T> implements Work {
     private Object[] params;
     private Class<T> type;
     private List<T> instance;
+    private RowProcessor rowProcessor = DBUtil.DEFAULT_ROW_PROCESSOR;
 
     public DbListWork(String sql, Object[] params, Class<T> type) {
         this.sql = sql;
@@ -28,10 +34,39 @@ public class DbListWork<T> implements Work {
         this.type = type;
     }
 
+    public DbListWork(String sql, Object[] params, Class<T> type, RowProcessor rowProcessor) {
+        this(sql, params, type);
+        this.rowProcessor = rowProcessor;
+    }
+
     @Override
     public void execute(Connection connection) throws SQLException {
         QueryRunner qr = new QueryRunner();
-        ResultSetHandler<List<T>> handler = new BeanListHandler<>(type);
+        ResultSetHandler<List<T>> handler = mapped(rowProcessor)
+                ? rs -> mapList(rs, type, rowProcessor instanceof CountingRowProcessor counter ? counter : null)
+                : new BeanListHandler<>(type, rowProcessor);
         instance = qr.query(connection, sql, handler, params);
     }
+
+    /**
+     * the row processors of this package map beans with a {@link RowMappers} mapper, custom
+     * processors keep their own mapping
+     */
+    static boolean mapped(RowProcessor rowProcessor) {
+        return rowProcessor == DBUtil.DEFAULT_ROW_PROCESSOR || rowProcessor.getClass() == CountingRowProcessor.class;
+    }
+
+    static <T> List<T> mapList(ResultSet rs, Class<T> type, CountingRowProcessor counter)
+            throws SQLException {
+        List<T> rows = new ArrayList<>();
+        if (!rs.next())
+            return rows;
+        RowMapper<T> mapper = RowMappers.of(type, rs.getMetaData());
+        do {
+            if (counter != null)
+                counter.readCount(rs);
+            rows.add(mapper.map(rs));
+        } while (rs.next());
+        return rows;
+    }
 }
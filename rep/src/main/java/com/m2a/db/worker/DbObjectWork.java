@@ -1,11 +1,11 @@
 package com.m2a.db.worker;
 
+import com.m2a.db.mapper.RowMappers;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
-import org.apache.commons.dbutils.handlers.BeanHandler;
 import org.hibernate.jdbc.Work;
 
 import java.sql.Connection;
@@ -30,7 +30,7 @@ public class DbObjectWork<T> implements Work {
     @Override
     public void execute(Connection connection) throws SQLException {
         QueryRunner qr = new QueryRunner();
-        ResultSetHandler<T> handler = new BeanHandler<>(type);
+        ResultSetHandler<T> handler = rs -> rs.next() ? RowMappers.of(type, rs.getMetaData()).map(rs) : null;
         instance = qr.query(connection, sql, handler, params);
     }
 }
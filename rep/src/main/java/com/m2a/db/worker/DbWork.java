@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.RowProcessor;
 import org.apache.commons.dbutils.handlers.MapListHandler;
 import org.hibernate.jdbc.Work;
 
@@ -21,16 +22,28 @@ public class DbWork implements Work {
     private String sql;
     private Object[] params;
     private List<Map<String, Object>> result;
+    private RowProcessor rowProcessor = DBUtil.DEFAULT_ROW_PROCESSOR;
 
     public DbWork(String sql, Object[] params) {
         this.sql = sql;
         this.params = params;
     }
 
+    public DbWork(String sql, Object[] params, RowProcessor rowProcessor) {
+        this(sql, params);
+        this.rowProcessor = rowProcessor;
+    }
+
     @Override
     public void execute(Connection connection) throws SQLException {
         QueryRunner qr = new QueryRunner();
-        ResultSetHandler<List<Map<String, Object>>> handler = new MapListHandler();
+        if (rowProcessor == DBUtil.DEFAULT_ROW_PROCESSOR || rowProcessor instanceof CountingRowProcessor) {
+            // the default row maps, stored compactly
+            CountingRowProcessor counter = rowProcessor instanceof CountingRowProcessor c ? c : null;
+            result = qr.query(connection, sql, rs -> RowSet.read(rs, counter), params).asMaps();
+            return;
+        }
+        ResultSetHandler<List<Map<String, Object>>> handler = new MapListHandler(rowProcessor);
         result = qr.query(connection, sql, handler, params);
     }
 }
@@ -0,0 +1,13 @@
+package com.m2a.db.worker;
+
+/**
+ * thrown when the {@link ConcurrencyLimiter} has no permit for a call within its max wait
+ */
+public class LimitExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LimitExceededException(String message) {
+        super(message);
+    }
+}
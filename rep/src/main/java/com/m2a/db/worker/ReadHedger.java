@@ -0,0 +1,240 @@
+package com.m2a.db.worker;
+
+import org.hibernate.JDBCException;
+import org.hibernate.jdbc.Work;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * hedged selects across the replicas of a {@link ReplicaSet}, opt in by setting it on the
+ * {@link DBUtil}. a select that has not answered within the hedge delay is sent again to
+ * another replica, the first answer wins and the statements of the other are cancelled
+ * with {@link Statement#cancel()}. the delay is the percentile of the latest read
+ * latencies, kept between min and max delay. only selects without side effects are hedged
+ */
+public class ReadHedger implements AutoCloseable {
+
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    public static final long DEFAULT_MIN_DELAY_MILLIS = 5;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    private static final int WINDOW = 512;
+    /**
+     * the delay is recomputed every that many samples
+     */
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount;
+    private volatile long delayNanos;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ReadHedger() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public ReadHedger(double percentile, long minDelayMillis, long maxDelayMillis) {
+        if (percentile <= 0 || percentile >= 1)
+            throw new IllegalArgumentException("percentile must be between 0 and 1");
+        if (minDelayMillis < 0 || minDelayMillis > maxDelayMillis)
+            throw new IllegalArgumentException("delays must satisfy 0 <= min <= max");
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        // max delay until there are enough samples
+        this.delayNanos = maxDelayNanos;
+    }
+
+    public long getDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+    }
+
+    public long getReads() {
+        return reads.sum();
+    }
+
+    /**
+     * reads sent to a second replica
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * hedged reads answered first by the second replica
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * hedges per read, the extra load put on the replicas
+     */
+    public double getHedgeRate() {
+        long count = reads.sum();
+        return count == 0 ? 0 : (double) hedges.sum() / count;
+    }
+
+    /**
+     * runs a work from the supplier on a replica and a second one on another replica when
+     * the first is slower than the hedge delay
+     *
+     * @return the work that answered first
+     */
+    <W extends Work> W read(ReplicaSet replicas, Supplier<W> newWork) {
+        reads.increment();
+        CompletableFuture<Attempt<W>> winner = new CompletableFuture<>();
+        AtomicInteger started = new AtomicInteger(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Attempt<W>> attempts = new ArrayList<>(2);
+        Attempt<W> first = new Attempt<>(newWork.get(), replicas.acquire());
+        attempts.add(first);
+        start(first, replicas, winner, started, failures);
+        try {
+            try {
+                return finish(winner.get(delayNanos, TimeUnit.NANOSECONDS), attempts);
+            } catch (TimeoutException e) {
+                started.incrementAndGet();
+                if (!winner.isDone()) {
+                    hedges.increment();
+                    Attempt<W> second = new Attempt<>(newWork.get(), replicas.acquire(first.replica));
+                    attempts.add(second);
+                    start(second, replicas, winner, started, failures);
+                }
+                return finish(winner.get(), attempts);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            attempts.forEach(Attempt::cancel);
+            throw new IllegalStateException("interrupted waiting for a hedged read", e);
+        } catch (ExecutionException e) {
+            attempts.forEach(Attempt::cancel);
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            if (e.getCause() instanceof SQLException se)
+                throw new JDBCException("could not execute hedged read", se);
+            throw new IllegalStateException("hedged read failed", e.getCause());
+        }
+    }
+
+    private <W extends Work> W finish(Attempt<W> won, List<Attempt<W>> attempts) {
+        for (Attempt<W> attempt : attempts)
+            if (attempt != won)
+                attempt.cancel();
+        if (attempts.size() > 1 && won != attempts.getFirst())
+            hedgeWins.increment();
+        record(won.latency);
+        return won.work;
+    }
+
+    private <W extends Work> void start(Attempt<W> attempt, ReplicaSet replicas,
+                                                           CompletableFuture<Attempt<W>> winner,
+                                                           AtomicInteger started, AtomicInteger failures) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try (Connection con = attempt.track(attempt.replica.getDataSource().getConnection())) {
+                attempt.work.execute(con);
+                attempt.latency = System.nanoTime() - start;
+                winner.complete(attempt);
+            } catch (Exception e) {
+                // the loser fails once cancelled, only the last failure fails the read
+                if (failures.incrementAndGet() >= started.get())
+                    winner.completeExceptionally(e);
+            } finally {
+                replicas.release(attempt.replica);
+            }
+        });
+    }
+
+    private synchronized void record(long latency) {
+        samples[sampleCount % WINDOW] = latency;
+        sampleCount++;
+        if (sampleCount % RECOMPUTE_EVERY != 0)
+            return;
+        long[] sorted = Arrays.copyOf(samples, Math.min(sampleCount, WINDOW));
+        Arrays.sort(sorted);
+        long delay = sorted[(int) (percentile * (sorted.length - 1))];
+        delayNanos = Math.clamp(delay, minDelayNanos, maxDelayNanos);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * one execution of the select on a replica, its statements are kept to be cancelled
+     */
+    private static final class Attempt<W> {
+        private final W work;
+        private final ReplicaSet.Replica replica;
+        private final List<Statement> statements = new ArrayList<>(1);
+        private boolean cancelled;
+        private volatile long latency;
+
+        private Attempt(W work, ReplicaSet.Replica replica) {
+            this.work = work;
+            this.replica = replica;
+        }
+
+        /**
+         * connection recording the statements it creates
+         */
+        private Connection track(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(ReadHedger.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (result instanceof Statement statement) {
+                            synchronized (this) {
+                                if (cancelled) {
+                                    statement.close();
+                                    throw new SQLException("hedged read cancelled");
+                                }
+                                statements.add(statement);
+                            }
+                        }
+                        return result;
+                    });
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            for (Statement statement : statements) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // already closed or not cancellable, it is dropped anyway
+                }
+            }
+        }
+    }
+}
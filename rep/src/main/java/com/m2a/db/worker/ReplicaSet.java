@@ -0,0 +1,85 @@
+package com.m2a.db.worker;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * read replicas of the primary database, shared by the application and set on every
+ * {@link DBUtil} that may read from them. each read goes to the replica with the fewest
+ * outstanding requests, ties are broken round robin
+ */
+public class ReplicaSet {
+
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaSet(List<DataSource> dataSources) {
+        if (dataSources == null || dataSources.isEmpty())
+            throw new IllegalArgumentException("replica set needs at least one data source");
+        List<Replica> list = new ArrayList<>(dataSources.size());
+        for (DataSource dataSource : dataSources)
+            list.add(new Replica(dataSource));
+        this.replicas = List.copyOf(list);
+    }
+
+    public ReplicaSet(DataSource... dataSources) {
+        this(List.of(dataSources));
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * picks the least loaded replica and counts the request on it until {@link #release}
+     */
+    Replica acquire() {
+        return acquire(null);
+    }
+
+    /**
+     * @param excluded replica not to pick, ignored when it is the only one
+     */
+    Replica acquire(Replica excluded) {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica best = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica == excluded && size > 1)
+                continue;
+            if (best == null || replica.outstanding.get() < best.outstanding.get())
+                best = replica;
+        }
+        best.outstanding.incrementAndGet();
+        return best;
+    }
+
+    void release(Replica replica) {
+        replica.outstanding.decrementAndGet();
+    }
+
+    public static final class Replica {
+        private final DataSource dataSource;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Replica(DataSource dataSource) {
+            if (dataSource == null)
+                throw new IllegalArgumentException("replica data source can not be null");
+            this.dataSource = dataSource;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        /**
+         * requests running on the replica
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+    }
+}
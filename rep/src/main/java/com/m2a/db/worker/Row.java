@@ -0,0 +1,216 @@
+package com.m2a.db.worker;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * one row of a {@link RowSet}: its values in column order and the column index shared by
+ * every row of the result. as a map it behaves like the dbutils row map, keys are the
+ * column labels looked up case insensitively. values of present columns are replaced in
+ * place, the first column added or removed copies the row to a map of its own
+ */
+public final class Row extends AbstractMap<String, Object> {
+
+    private final RowSet.Columns columns;
+    private final Object[] values;
+    /**
+     * the row once a column was added or removed, null before
+     */
+    private Detached detached;
+
+    Row(RowSet.Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * column labels of the result, the same list instance for every row of it
+     */
+    public List<String> getColumns() {
+        return detached == null ? columns.list() : List.copyOf(detached.keySet());
+    }
+
+    /**
+     * @param column zero based column index, of {@link #getColumns()}
+     */
+    public Object get(int column) {
+        if (detached == null)
+            return values[column];
+        Iterator<Object> it = detached.values().iterator();
+        for (int i = 0; i < column; i++)
+            it.next();
+        return it.next();
+    }
+
+    public Long getLong(String column) {
+        Object value = get(column);
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    public Integer getInt(String column) {
+        Object value = get(column);
+        return value == null ? null : ((Number) value).intValue();
+    }
+
+    public String getString(String column) {
+        Object value = get(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public int size() {
+        return detached == null ? values.length : detached.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (detached != null)
+            return detached.containsKey(key);
+        return key instanceof String column && columns.indexOf(column) != -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (detached != null)
+            return detached.get(key);
+        int index = key instanceof String column ? columns.indexOf(column) : -1;
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (detached != null)
+            return detached.put(key, value);
+        int index = columns.indexOf(key);
+        if (index == -1)
+            return detach().put(key, value);
+        Object old = values[index];
+        values[index] = value;
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return detach().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        detach().clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (detached != null)
+            return detached.entrySet();
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (index >= values.length)
+                            throw new NoSuchElementException();
+                        int column = index++;
+                        return new SimpleEntry<>(columns.label(column), values[column]) {
+                            @Override
+                            public Object setValue(Object value) {
+                                super.setValue(value);
+                                return put(getKey(), value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (index == 0)
+                            throw new IllegalStateException();
+                        Row.this.remove(columns.label(index - 1));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Row.this.size();
+            }
+        };
+    }
+
+    private Detached detach() {
+        if (detached == null) {
+            Detached map = new Detached();
+            for (int i = 0; i < values.length; i++)
+                map.put(columns.label(i), values[i]);
+            detached = map;
+        }
+        return detached;
+    }
+
+    /**
+     * detached copy of the row as a plain map
+     */
+    public Map<String, Object> toMap() {
+        return new LinkedHashMap<>(this);
+    }
+
+    /**
+     * linked map with the case insensitive keys of the dbutils row map
+     */
+    private static final class Detached extends LinkedHashMap<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * lower case key of each key of the map
+         */
+        private final HashMap<String, String> keys = new HashMap<>();
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String k && super.containsKey(keys.get(k.toLowerCase(Locale.ENGLISH)));
+        }
+
+        @Override
+        public Object get(Object key) {
+            return key instanceof String k ? super.get(keys.get(k.toLowerCase(Locale.ENGLISH))) : null;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            String old = keys.put(key.toLowerCase(Locale.ENGLISH), key);
+            if (key.equals(old))
+                return super.put(key, value);
+            Object oldValue = old == null ? null : super.remove(old);
+            super.put(key, value);
+            return oldValue;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            String k = key instanceof String s ? keys.remove(s.toLowerCase(Locale.ENGLISH)) : null;
+            return k == null ? null : super.remove(k);
+        }
+
+        @Override
+        public void clear() {
+            keys.clear();
+            super.clear();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.m2a.db.worker;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * rows of a query result stored as one value array per row and one column index for the
+ * whole result, instead of a map with its own keys per row. {@link #get(int)} returns a
+ * {@link Row} view over the array, {@link #asMaps()} a list of the same rows typed as the
+ * maps of {@code MapListHandler} for {@link com.m2a.db.QueryMapper#toList} and older callers
+ */
+public final class RowSet extends AbstractList<Row> implements RandomAccess {
+
+    private final Columns columns;
+    private final List<Object[]> rows;
+
+    RowSet(Columns columns, List<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * reads the remaining rows of the result set
+     */
+    public static RowSet read(ResultSet rs) throws SQLException {
+        return read(rs, null);
+    }
+
+    /**
+     * @param counter reads the window count and keeps its column out of the rows, may be null
+     */
+    static RowSet read(ResultSet rs, CountingRowProcessor counter) throws SQLException {
+        String excludedColumn = counter == null ? null : counter.getCountColumn();
+        ResultSetMetaData meta = rs.getMetaData();
+        int count = meta.getColumnCount();
+        int[] positions = new int[count];
+        List<String> labels = new ArrayList<>(count);
+        Map<String, Integer> slots = new HashMap<>(count * 2);
+        for (int i = 1; i <= count; i++) {
+            String label = meta.getColumnLabel(i);
+            if (label == null || label.isEmpty())
+                label = meta.getColumnName(i);
+            if (label.equalsIgnoreCase(excludedColumn))
+                continue;
+            // a repeated label keeps its first position and the value of its last column,
+            // as in the dbutils row map
+            Integer slot = slots.putIfAbsent(label.toLowerCase(Locale.ENGLISH), labels.size());
+            if (slot != null) {
+                positions[slot] = i;
+                continue;
+            }
+            positions[labels.size()] = i;
+            labels.add(label);
+        }
+        int width = labels.size();
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            if (counter != null)
+                counter.readCount(rs);
+            Object[] values = new Object[width];
+            for (int i = 0; i < width; i++)
+                values[i] = rs.getObject(positions[i]);
+            rows.add(values);
+        }
+        return new RowSet(new Columns(labels.toArray(new String[0])), rows);
+    }
+
+    public List<String> getColumns() {
+        return columns.list;
+    }
+
+    /**
+     * @return zero based index of the column, -1 when there is none
+     */
+    public int indexOf(String column) {
+        return columns.indexOf(column);
+    }
+
+    @Override
+    public Row get(int index) {
+        return new Row(columns, rows.get(index));
+    }
+
+    @Override
+    public Row remove(int index) {
+        return new Row(columns, rows.remove(index));
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * new modifiable list of the rows as maps, each row keeps the columns it is given or
+     * loses, as the list of {@code MapListHandler} does
+     */
+    public List<Map<String, Object>> asMaps() {
+        List<Map<String, Object>> maps = new ArrayList<>(rows.size());
+        for (Object[] row : rows)
+            maps.add(new Row(columns, row));
+        return maps;
+    }
+
+    /**
+     * column labels of a result and their case insensitive index, shared by its rows
+     */
+    static final class Columns {
+        private final String[] labels;
+        private final List<String> list;
+        private final Map<String, Integer> index;
+
+        Columns(String[] labels) {
+            this.labels = labels;
+            this.list = List.of(labels);
+            this.index = new HashMap<>(labels.length * 2);
+            for (int i = 0; i < labels.length; i++)
+                index.put(labels[i].toLowerCase(Locale.ENGLISH), i);
+        }
+
+        List<String> list() {
+            return list;
+        }
+
+        String label(int column) {
+            return labels[column];
+        }
+
+        int indexOf(String column) {
+            Integer i = index.get(column);
+            if (i == null)
+                i = index.get(column.toLowerCase(Locale.ENGLISH));
+            return i == null ? -1 : i;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.m2a.db.worker;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.sql.DataSource;
+import java.util.function.Consumer;
+
+/**
+ * runs the action with a db util of its own and closes it afterwards, for the calls made
+ * off the thread of the caller (a hibernate session is not thread safe)
+ */
+@FunctionalInterface
+public interface SessionScope {
+
+    void run(Consumer<DBUtil> action);
+
+    /**
+     * a session of the factory opened for the action
+     */
+    static SessionScope of(SessionFactory sessionFactory) {
+        if (sessionFactory == null)
+            throw new IllegalArgumentException("session factory can not be null");
+        return action -> {
+            try (Session session = sessionFactory.openSession()) {
+                action.accept(new DBUtil(session));
+            }
+        };
+    }
+
+    /**
+     * hibernate free mode, every work of the action borrows a connection of the data source
+     */
+    static SessionScope of(DataSource dataSource) {
+        if (dataSource == null)
+            throw new IllegalArgumentException("data source can not be null");
+        return action -> action.accept(new DBUtil(dataSource));
+    }
+}
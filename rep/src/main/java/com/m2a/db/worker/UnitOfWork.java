@@ -0,0 +1,83 @@
+package com.m2a.db.worker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * connection of a {@link DBUtil#inUnitOfWork} scope. works see a connection that can not
+ * be closed and whose {@code prepareStatement(sql)} returns the statement prepared for the
+ * same sql before, closing it only clears its parameters. the statements are closed with
+ * the unit of work
+ */
+final class UnitOfWork implements AutoCloseable {
+
+    private final Connection connection;
+    private final Connection shared;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+
+    UnitOfWork(Connection connection) {
+        this.connection = connection;
+        this.shared = (Connection) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> null;
+                    case "prepareStatement" -> args.length == 1 ? prepare((String) args[0]) : invoke(connection, method, args);
+                    default -> invoke(connection, method, args);
+                });
+    }
+
+    Connection getConnection() {
+        return shared;
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !ps.isClosed())
+            return ps;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        prepared.add(statement);
+        ps = (PreparedStatement) Proxy.newProxyInstance(UnitOfWork.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        statement.clearParameters();
+                        yield null;
+                    }
+                    case "getConnection" -> shared;
+                    default -> invoke(statement, method, args);
+                });
+        statements.put(sql, ps);
+        return ps;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PreparedStatement ps : prepared) {
+            try {
+                ps.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        statements.clear();
+        prepared.clear();
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,23 @@
+package com.m2a.enums;
+
+/**
+ * how {@link com.m2a.db.query.QueryController} computes the total result count
+ */
+public enum CountPolicy {
+    /**
+     * never count, next page is detected by reading one row more than max results
+     */
+    NONE,
+    /**
+     * exact count query, computed at most once per refresh
+     */
+    EXACT,
+    /**
+     * row estimate of the database planner, no rows are read
+     */
+    ESTIMATED,
+    /**
+     * exact count up to the count cap, larger results are reported as the cap
+     */
+    CAPPED
+}
@@ -0,0 +1,209 @@
+package com.m2a.reflections;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * what reflection tells about a class, read once per class: the fields of the class and
+ * its super classes, the super classes, the interfaces and the type arguments its generic
+ * super types are given. generic fields and methods are resolved on first use
+ */
+public final class ClassMetadata {
+
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Class<?> type;
+    /**
+     * declared fields of the class then of each super class, {@code Object} excluded
+     */
+    private final List<Field> fields;
+    /**
+     * the field a name resolves to, the one of the class nearest to this one
+     */
+    private final Map<String, Field> fieldsByName;
+    private final List<Class<?>> superclasses;
+    private final List<Class<?>> interfaces;
+    private final Set<Class<?>> supertypes;
+    /**
+     * type variables of the generic super types and what this class binds them to
+     */
+    private final Map<TypeVariable<?>, Type> typeVariables;
+    /**
+     * first type argument of generic fields and method return types, keyed by the member
+     */
+    private final Map<Object, Optional<Class<?>>> typeArguments = new ConcurrentHashMap<>();
+
+    private ClassMetadata(Class<?> type) {
+        this.type = type;
+        List<Field> allFields = new ArrayList<>();
+        Map<String, Field> byName = new HashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                allFields.add(field);
+                byName.putIfAbsent(field.getName(), field);
+            }
+        }
+        List<Class<?>> supers = new ArrayList<>();
+        for (Class<?> c = type.getSuperclass(); c != null; c = c.getSuperclass())
+            supers.add(c);
+        Set<Class<?>> allInterfaces = new LinkedHashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+            addInterfaces(c, allInterfaces);
+        Map<TypeVariable<?>, Type> variables = new HashMap<>();
+        bindTypeVariables(type, variables);
+        this.fields = Collections.unmodifiableList(allFields);
+        this.fieldsByName = Map.copyOf(byName);
+        this.superclasses = List.copyOf(supers);
+        this.interfaces = List.copyOf(allInterfaces);
+        Set<Class<?>> all = new LinkedHashSet<>(supers);
+        all.addAll(allInterfaces);
+        this.supertypes = Set.copyOf(all);
+        this.typeVariables = variables;
+    }
+
+    public static ClassMetadata of(Class<?> type) {
+        return METADATA.get(type);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return the field of the class or of the nearest super class declaring it, null when
+     * there is none
+     */
+    public Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    public List<Class<?>> getSuperclasses() {
+        return superclasses;
+    }
+
+    /**
+     * interfaces of the class, its super classes and their super interfaces
+     */
+    public List<Class<?>> getInterfaces() {
+        return interfaces;
+    }
+
+    /**
+     * @return whether the type is a super class or an interface of this class
+     */
+    public boolean isSubclassOf(Class<?> supertype) {
+        return supertypes.contains(supertype);
+    }
+
+    /**
+     * @return the class of the first type argument of the field type, null when it is not
+     * parameterized or the argument is not bound by this class
+     */
+    public Class<?> typeArgument(Field field) {
+        return typeArguments.computeIfAbsent(field,
+                f -> Optional.ofNullable(firstArgument(field.getGenericType()))).orElse(null);
+    }
+
+    /**
+     * @return the class of the first type argument of the method return type, null when it
+     * is not parameterized or the argument is not bound by this class
+     */
+    public Class<?> typeArgument(Method method) {
+        return typeArguments.computeIfAbsent(method,
+                m -> Optional.ofNullable(firstArgument(method.getGenericReturnType()))).orElse(null);
+    }
+
+    /**
+     * type arguments this class gives a generic super class or interface, unbound ones are null
+     */
+    public List<Class<?>> typeArguments(Class<?> generic) {
+        List<Class<?>> arguments = new ArrayList<>();
+        for (TypeVariable<?> variable : generic.getTypeParameters())
+            arguments.add(resolve(variable));
+        return arguments;
+    }
+
+    /**
+     * the class a type stands for in this class, null for a type variable it does not bind
+     */
+    public Class<?> resolve(Type t) {
+        if (t instanceof Class<?> c)
+            return c;
+        if (t instanceof ParameterizedType p)
+            return (Class<?>) p.getRawType();
+        if (t instanceof TypeVariable<?> v) {
+            Type bound = typeVariables.get(v);
+            return bound == null ? null : resolve(bound);
+        }
+        if (t instanceof GenericArrayType a) {
+            Class<?> component = resolve(a.getGenericComponentType());
+            return component == null ? null : Array.newInstance(component, 0).getClass();
+        }
+        if (t instanceof WildcardType w)
+            return resolve(w.getUpperBounds()[0]);
+        return null;
+    }
+
+    private Class<?> firstArgument(Type t) {
+        if (!(t instanceof ParameterizedType p))
+            return null;
+        return resolve(p.getActualTypeArguments()[0]);
+    }
+
+    private static void addInterfaces(Class<?> c, Set<Class<?>> interfaces) {
+        for (Class<?> i : c.getInterfaces()) {
+            interfaces.add(i);
+            addInterfaces(i, interfaces);
+        }
+    }
+
+    /**
+     * binds the type variables of the generic super types of c, arguments that are type
+     * variables of c itself are replaced by what the subclass bound them to
+     */
+    private static void bindTypeVariables(Class<?> c, Map<TypeVariable<?>, Type> variables) {
+        List<Type> generics = new ArrayList<>();
+        if (c.getGenericSuperclass() != null)
+            generics.add(c.getGenericSuperclass());
+        Collections.addAll(generics, c.getGenericInterfaces());
+        for (Type generic : generics) {
+            if (generic instanceof ParameterizedType p && p.getRawType() instanceof Class<?> raw) {
+                TypeVariable<?>[] parameters = raw.getTypeParameters();
+                Type[] arguments = p.getActualTypeArguments();
+                for (int i = 0; i < parameters.length && i < arguments.length; i++) {
+                    Type argument = arguments[i];
+                    if (argument instanceof TypeVariable<?> v && variables.containsKey(v))
+                        argument = variables.get(v);
+                    variables.putIfAbsent(parameters[i], argument);
+                }
+                bindTypeVariables(raw, variables);
+            } else if (generic instanceof Class<?> raw) {
+                bindTypeVariables(raw, variables);
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.m2a.reflections;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * converters of a value of one class to another, resolved once per (source, target) pair.
+ * numbers are narrowed and widened directly, narrowing must not lose the value. dates
+ * convert between {@code java.sql}, {@code java.time} and {@link Date} in the system zone,
+ * enums are looked up by name. values of a target subtype and pairs without a converter
+ * are returned as they are, as {@link ReflectionUtil#toObject} always did, except for
+ * number, boolean and character targets which fail with an {@link IllegalArgumentException}
+ */
+public final class Converters {
+
+    @FunctionalInterface
+    public interface Converter {
+        Object convert(Object value);
+    }
+
+    public static final Converter IDENTITY = value -> value;
+
+    /**
+     * converters added for a source class, keyed by the target class
+     */
+    private static final Map<Class<?>, Map<Class<?>, Converter>> REGISTERED = new ConcurrentHashMap<>();
+
+    private static volatile ClassValue<Map<Class<?>, Converter>> resolved = newCache();
+
+    private static final ClassValue<Map<String, Enum<?>>> ENUM_NAMES = new ClassValue<>() {
+        @Override
+        protected Map<String, Enum<?>> computeValue(Class<?> type) {
+            Map<String, Enum<?>> names = new HashMap<>();
+            for (Object constant : type.getEnumConstants())
+                names.put(((Enum<?>) constant).name(), (Enum<?>) constant);
+            return Map.copyOf(names);
+        }
+    };
+
+    static {
+        register(String.class, Date.class, value -> {
+            throw new IllegalArgumentException("persian date can not be handled yet");
+        });
+        register(String.class, LocalDate.class, value -> LocalDate.parse((String) value));
+        register(String.class, LocalDateTime.class, value -> LocalDateTime.parse((String) value));
+        register(String.class, LocalTime.class, value -> LocalTime.parse((String) value));
+        register(String.class, Character.class, value -> {
+            String s = (String) value;
+            if (s.length() != 1)
+                throw new IllegalArgumentException("can not convert \"" + s + "\" to a character");
+            return s.charAt(0);
+        });
+
+        register(Timestamp.class, LocalDateTime.class, value -> ((Timestamp) value).toLocalDateTime());
+        register(Timestamp.class, LocalDate.class, value -> ((Timestamp) value).toLocalDateTime().toLocalDate());
+        register(Timestamp.class, Instant.class, value -> ((Timestamp) value).toInstant());
+        register(java.sql.Date.class, LocalDate.class, value -> ((java.sql.Date) value).toLocalDate());
+        register(java.sql.Date.class, LocalDateTime.class, value -> ((java.sql.Date) value).toLocalDate().atStartOfDay());
+        register(java.sql.Date.class, Instant.class,
+                value -> ((java.sql.Date) value).toLocalDate().atStartOfDay(ZoneId.systemDefault()).toInstant());
+        register(Time.class, LocalTime.class, value -> ((Time) value).toLocalTime());
+        register(Date.class, Timestamp.class, value -> new Timestamp(((Date) value).getTime()));
+        register(Date.class, java.sql.Date.class, value -> new java.sql.Date(((Date) value).getTime()));
+        register(Date.class, Instant.class, value -> ((Date) value).toInstant());
+        register(Date.class, LocalDateTime.class,
+                value -> LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()));
+        register(Date.class, LocalDate.class,
+                value -> LocalDate.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()));
+
+        register(LocalDateTime.class, Timestamp.class, value -> Timestamp.valueOf((LocalDateTime) value));
+        register(LocalDateTime.class, Date.class, value -> Timestamp.valueOf((LocalDateTime) value));
+        register(LocalDateTime.class, java.sql.Date.class,
+                value -> java.sql.Date.valueOf(((LocalDateTime) value).toLocalDate()));
+        register(LocalDateTime.class, LocalDate.class, value -> ((LocalDateTime) value).toLocalDate());
+        register(LocalDate.class, java.sql.Date.class, value -> java.sql.Date.valueOf((LocalDate) value));
+        register(LocalDate.class, Date.class, value -> java.sql.Date.valueOf((LocalDate) value));
+        register(LocalDate.class, Timestamp.class, value -> Timestamp.valueOf(((LocalDate) value).atStartOfDay()));
+        register(LocalDate.class, LocalDateTime.class, value -> ((LocalDate) value).atStartOfDay());
+        register(LocalTime.class, Time.class, value -> Time.valueOf((LocalTime) value));
+        register(OffsetDateTime.class, Timestamp.class, value -> Timestamp.from(((OffsetDateTime) value).toInstant()));
+        register(OffsetDateTime.class, Date.class, value -> Date.from(((OffsetDateTime) value).toInstant()));
+        register(OffsetDateTime.class, LocalDateTime.class, value -> ((OffsetDateTime) value).toLocalDateTime());
+        register(Instant.class, Timestamp.class, value -> Timestamp.from((Instant) value));
+        register(Instant.class, Date.class, value -> Date.from((Instant) value));
+    }
+
+    private Converters() {
+    }
+
+    /**
+     * adds or replaces the converter of a pair, values of subclasses of the source use it too
+     */
+    public static void register(Class<?> source, Class<?> target, Converter converter) {
+        if (source == null || target == null || converter == null)
+            throw new IllegalArgumentException("source, target and converter can not be null");
+        REGISTERED.computeIfAbsent(source, s -> new ConcurrentHashMap<>()).put(box(target), converter);
+        resolved = newCache();
+    }
+
+    /**
+     * converter of non null values of the source class to the target class
+     */
+    public static Converter of(Class<?> source, Class<?> target) {
+        Map<Class<?>, Converter> converters = resolved.get(source);
+        Converter converter = converters.get(target);
+        if (converter == null) {
+            converter = resolve(source, box(target));
+            converters.putIfAbsent(target, converter);
+        }
+        return converter;
+    }
+
+    /**
+     * @return the value converted to the target class, null for null
+     */
+    public static Object convert(Object value, Class<?> target) {
+        return value == null ? null : of(value.getClass(), target).convert(value);
+    }
+
+    /**
+     * @return the constant of the name
+     * @throws IllegalArgumentException when the enum has no such constant
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> E enumValue(Class<E> type, String name) {
+        Enum<?> constant = ENUM_NAMES.get(type).get(name);
+        if (constant == null)
+            throw new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + name);
+        return (E) constant;
+    }
+
+    private static ClassValue<Map<Class<?>, Converter>> newCache() {
+        return new ClassValue<>() {
+            @Override
+            protected Map<Class<?>, Converter> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Converter resolve(Class<?> source, Class<?> target) {
+        if (target.isAssignableFrom(source))
+            return IDENTITY;
+        Converter registered = registered(source, target);
+        if (registered != null)
+            return registered;
+        if (Number.class.isAssignableFrom(target) && Number.class.isAssignableFrom(source)) {
+            Converter numeric = numeric(source, target);
+            if (numeric != null)
+                return numeric;
+        }
+        if (source == String.class) {
+            Converter parse = parse(target);
+            if (parse != null)
+                return parse;
+        }
+        if (target.isEnum())
+            return value -> enumValue((Class) target, String.valueOf(value));
+        if (target == String.class)
+            return String::valueOf;
+        if (target == Boolean.class && Number.class.isAssignableFrom(source))
+            return value -> ((Number) value).intValue() != 0;
+        if (Number.class.isAssignableFrom(target) || target == Boolean.class || target == Character.class)
+            return unconverted(source, target);
+        return IDENTITY;
+    }
+
+    /**
+     * numbers are parsed from the text of the value as {@link ReflectionUtil#toObject} did,
+     * other pairs fail here instead of when the value is set
+     */
+    private static Converter unconverted(Class<?> source, Class<?> target) {
+        Converter parse = Number.class.isAssignableFrom(target) ? parse(target) : null;
+        return value -> {
+            if (parse != null) {
+                try {
+                    return parse.convert(String.valueOf(value));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("can not convert " + source.getName() + " to "
+                            + target.getName() + " : " + value, e);
+                }
+            }
+            throw new IllegalArgumentException("no converter of " + source.getName() + " to " + target.getName());
+        };
+    }
+
+    /**
+     * the converter added for the source, one of its super classes or interfaces
+     */
+    private static Converter registered(Class<?> source, Class<?> target) {
+        List<Class<?>> sources = new ArrayList<>();
+        sources.add(source);
+        sources.addAll(ClassMetadata.of(source).getSuperclasses());
+        sources.addAll(ClassMetadata.of(source).getInterfaces());
+        for (Class<?> s : sources) {
+            Map<Class<?>, Converter> byTarget = REGISTERED.get(s);
+            Converter converter = byTarget == null ? null : byTarget.get(target);
+            if (converter != null)
+                return converter;
+        }
+        return null;
+    }
+
+    private static Converter numeric(Class<?> source, Class<?> target) {
+        if (target == Long.class)
+            return value -> exactLong((Number) value);
+        if (target == Integer.class)
+            return value -> (int) narrow((Number) value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (target == Short.class)
+            return value -> (short) narrow((Number) value, Short.MIN_VALUE, Short.MAX_VALUE);
+        if (target == Byte.class)
+            return value -> (byte) narrow((Number) value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        if (target == Double.class)
+            return value -> ((Number) value).doubleValue();
+        if (target == Float.class)
+            return value -> ((Number) value).floatValue();
+        if (target == BigDecimal.class) {
+            if (source == Long.class || source == Integer.class || source == Short.class || source == Byte.class)
+                return value -> BigDecimal.valueOf(((Number) value).longValue());
+            if (source == Double.class)
+                return value -> BigDecimal.valueOf((Double) value);
+            if (source == BigInteger.class)
+                return value -> new BigDecimal((BigInteger) value);
+            return value -> new BigDecimal(value.toString());
+        }
+        return null;
+    }
+
+    private static Converter parse(Class<?> target) {
+        if (target == Long.class)
+            return value -> Long.parseLong((String) value);
+        if (target == Integer.class)
+            return value -> Integer.parseInt((String) value);
+        if (target == Short.class)
+            return value -> Short.parseShort((String) value);
+        if (target == Byte.class)
+            return value -> Byte.parseByte((String) value);
+        if (target == Double.class)
+            return value -> Double.parseDouble((String) value);
+        if (target == Float.class)
+            return value -> Float.parseFloat((String) value);
+        if (target == BigDecimal.class)
+            return value -> new BigDecimal((String) value);
+        if (target == Boolean.class)
+            return value -> "1".equals(value) || Boolean.parseBoolean((String) value);
+        return null;
+    }
+
+    private static long narrow(Number value, long min, long max) {
+        long v = exactLong(value);
+        if (v < min || v > max)
+            throw new IllegalArgumentException("can not convert " + value + ", out of range");
+        return v;
+    }
+
+    /**
+     * the value as a long, when it has no fraction and fits
+     */
+    private static long exactLong(Number value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return value.longValue();
+        try {
+            if (value instanceof BigDecimal d)
+                return d.longValueExact();
+            if (value instanceof BigInteger i)
+                return i.longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("can not convert " + value + " to a long", e);
+        }
+        double d = value.doubleValue();
+        if (d != Math.rint(d) || d < Long.MIN_VALUE || d >= 0x1p63)
+            throw new IllegalArgumentException("can not convert " + value + " to a long");
+        return (long) d;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive())
+            return type;
+        if (type == int.class)
+            return Integer.class;
+        if (type == long.class)
+            return Long.class;
+        if (type == double.class)
+            return Double.class;
+        if (type == boolean.class)
+            return Boolean.class;
+        if (type == float.class)
+            return Float.class;
+        if (type == short.class)
+            return Short.class;
+        if (type == byte.class)
+            return Byte.class;
+        if (type == char.class)
+            return Character.class;
+        return Void.class;
+    }
+}
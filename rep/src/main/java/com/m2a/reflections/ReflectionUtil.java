@@ -7,23 +7,14 @@ import java.beans.PropertyDescriptor;
 import java.lang.reflect.*;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.logging.Logger;
 
 public class ReflectionUtil {
 
-    private static final Logger logger = Logger.getLogger(ReflectionUtil.class.getName());
-
     private static final Class<?>[] WRAPPER_TYPES =
             {int.class, long.class, short.class, float.class, double.class, byte.class, boolean.class, char.class};
 
     public static List<Field> getFields(Class<?> clazz) {
-        List<Field> fields = new ArrayList<>();
-        for (Class<?> superClass = clazz;
-             superClass != Object.class;
-             superClass = superClass.getSuperclass()) {
-            Collections.addAll(fields, superClass.getDeclaredFields());
-        }
-        return fields;
+        return new ArrayList<>(ClassMetadata.of(clazz).getFields());
     }
 
     @SafeVarargs
@@ -33,24 +24,34 @@ public class ReflectionUtil {
         return list;
     }
 
+    /**
+     * @return class of the first type argument of the field, null when it is a type
+     * variable the declaring class does not bind
+     * @throws ClassCastException when the field type is not parameterized
+     */
     public static Class<?> getGenericFieldClassType(Field field) throws SecurityException {
         field.setAccessible(true);
-        ParameterizedType parameterizedType = (ParameterizedType) field.getGenericType();
-        return (Class<?>) parameterizedType.getActualTypeArguments()[0];
+        return getGenericFieldClassType(field.getDeclaringClass(), field);
+    }
+
+    /**
+     * @param clz the class the field is read from, a type variable of a generic super class
+     *            is resolved to what clz binds it to
+     * @return class of the first type argument of the field, null when it is not bound
+     * @throws ClassCastException when the field type is not parameterized
+     */
+    public static Class<?> getGenericFieldClassType(Class<?> clz, Field field) {
+        if (!(field.getGenericType() instanceof ParameterizedType))
+            throw new ClassCastException(field + " is not parameterized");
+        return ClassMetadata.of(clz).typeArgument(field);
     }
 
+    /**
+     * @return the field of the class or of its nearest super class declaring it, null when
+     * there is none
+     */
     public static Field getField(Class<?> clazz, String name) {
-        for (Class<?> superClass = clazz;
-             superClass != Object.class;
-             superClass = superClass.getSuperclass()) {
-            try {
-                return superClass.getDeclaredField(name);
-            } catch (NoSuchFieldException nsf) {
-                logger.info(name + " field not found");
-                nsf.fillInStackTrace();
-            }
-        }
-        return null;
+        return ClassMetadata.of(clazz).getField(name);
     }
 
     public static Collection<?> instantiateCollection(Class<?> t) {
@@ -115,53 +116,21 @@ public class ReflectionUtil {
         return clazz.isEnum();
     }
 
-    @SuppressWarnings("unchecked")
     public static boolean isSubclass(Class<?> class1, Class<?> class2) {
-        List<Class<?>> superClasses = (List<Class<?>>) getAllSuperclasses(class1);
-        List<Class<?>> superInterfaces = (List<Class<?>>) getAllInterfaces(class1);
-        for (Class<?> c : superClasses) {
-            if (class2 == c)
-                return true;
-        }
-        for (Class<?> c : superInterfaces) {
-            if (class2 == c)
-                return true;
-        }
-        return false;
+        return ClassMetadata.of(class1).isSubclassOf(class2);
     }
 
     public static List<?> getAllSuperclasses(Class<?> cls) {
         if (cls == null) {
             return null;
         }
-        List<Object> classes = new ArrayList<>();
-        Class<?> superclass = cls.getSuperclass();
-        while (superclass != null) {
-            classes.add(superclass);
-            superclass = superclass.getSuperclass();
-        }
-        return classes;
+        return new ArrayList<>(ClassMetadata.of(cls).getSuperclasses());
     }
 
     public static List<?> getAllInterfaces(Class<?> cls) {
         if (cls == null)
             return null;
-        List<Object> list = new ArrayList<>();
-        while (cls != null) {
-            Class<?>[] interfaces = cls.getInterfaces();
-            for (Class<?> anInterface : interfaces) {
-                if (!list.contains(anInterface))
-                    list.add(anInterface);
-                List<?> superInterfaces = getAllInterfaces(anInterface);
-                for (Object superInterface : superInterfaces) {
-                    Class<?> _interface = (Class<?>) superInterface;
-                    if (!list.contains(_interface))
-                        list.add(_interface);
-                }
-            }
-            cls = cls.getSuperclass();
-        }
-        return list;
+        return new ArrayList<>(ClassMetadata.of(cls).getInterfaces());
     }
 
     public static Class<?> primitiveTypeFor(Class<?> wrapper) {
@@ -194,38 +163,17 @@ public class ReflectionUtil {
         return null;
     }
 
+    /**
+     * converts the value to the class with the {@link Converters} converter of the pair,
+     * empty strings are null
+     */
     public static Object toObject(Class<?> clazz, Object value) {
         if (value == null)
             return null;
         if (value instanceof String v)
             if (StringUtil.isEmpty(v))
                 return null;
-        if (Boolean.class == clazz || boolean.class == clazz)
-            return value;
-        if (Date.class == clazz) {
-            if (value instanceof String) {
-                throw new IllegalArgumentException("persian date can not be handled yet");
-            } else {
-                return value;
-            }
-        }
-        if (Byte.class == clazz || byte.class == clazz)
-            return Byte.parseByte(String.valueOf(value));
-        if (Short.class == clazz || short.class == clazz)
-            return Short.parseShort(String.valueOf(value));
-        if (BigDecimal.class == clazz)
-            return new BigDecimal(String.valueOf(value));
-        if (Integer.class == clazz || int.class == clazz)
-            return Integer.parseInt(String.valueOf(value));
-        if (Long.class == clazz || long.class == clazz)
-            return Long.parseLong(String.valueOf(value));
-        if (Float.class == clazz || float.class == clazz)
-            return Float.parseFloat(String.valueOf(value));
-        if (Double.class == clazz || double.class == clazz)
-            return Double.parseDouble(String.valueOf(value));
-        if (String.class == clazz)
-            return String.valueOf(value);
-        return value;
+        return Converters.of(value.getClass(), clazz).convert(value);
     }
 
 
@@ -398,10 +346,14 @@ public class ReflectionUtil {
         return value instanceof Collection;
     }
 
+    /**
+     * @return class of the first type argument of the method return type as bound by the
+     * class, null when it is not bound
+     * @throws ClassCastException when the return type is not parameterized
+     */
     public static Class<?> getGenericMethodClassType(Class<?> clz, Method method) {
-        Type type = ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
-        if (type instanceof TypeVariable)
-            return null;
-        return (Class<?>) type;
+        if (!(method.getGenericReturnType() instanceof ParameterizedType))
+            throw new ClassCastException(method + " does not return a parameterized type");
+        return ClassMetadata.of(clz).typeArgument(method);
     }
 }
@@ -0,0 +1,57 @@
+package com.m2a.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.DoubleStream;
+
+/**
+ * growable {@code double} array, the values are never boxed
+ */
+public final class DoubleList {
+
+    private double[] values;
+    private int size;
+
+    public DoubleList() {
+        this(16);
+    }
+
+    public DoubleList(int capacity) {
+        values = new double[Math.max(capacity, 1)];
+    }
+
+    public void add(double value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, size * 2);
+        values[size++] = value;
+    }
+
+    public double get(int index) {
+        Objects.checkIndex(index, size);
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * copy of the values
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(values, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}